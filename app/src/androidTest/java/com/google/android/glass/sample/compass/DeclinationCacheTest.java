@@ -0,0 +1,76 @@
+package com.google.android.glass.sample.compass;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks which locations and times share a cell of {@link DeclinationCache}, and that the least
+ * recently used cells are the ones evicted.
+ */
+public class DeclinationCacheTest extends TestCase {
+
+    private static final long TIME_MILLIS = TimeUnit.DAYS.toMillis(16000) + 1;
+
+    /** The number of cells the cache holds. */
+    private static final int CAPACITY = 16;
+
+    private DeclinationCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cache = new DeclinationCache();
+    }
+
+    public void testSameCellIsEvaluatedOnce() {
+        float declination = cache.getDeclination(45.01, 5.01, 200, TIME_MILLIS);
+        assertEquals(declination, cache.getDeclination(45.09, 5.09, 900, TIME_MILLIS + 1000));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    public void testNeighbouringCellsAreEvaluatedSeparately() {
+        cache.getDeclination(45.05, 5.05, 200, TIME_MILLIS);
+        cache.getDeclination(45.15, 5.05, 200, TIME_MILLIS);
+        cache.getDeclination(45.05, 5.15, 200, TIME_MILLIS);
+        cache.getDeclination(45.05, 5.05, 1200, TIME_MILLIS);
+        cache.getDeclination(45.05, 5.05, 200, TIME_MILLIS + TimeUnit.DAYS.toMillis(30));
+        assertEquals(5, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    public void testAntimeridianAndPolesShareCells() {
+        cache.getDeclination(0.0, 180.0, 0, TIME_MILLIS);
+        cache.getDeclination(0.0, -180.0, 0, TIME_MILLIS);
+        cache.getDeclination(90.0, 0.0, 0, TIME_MILLIS);
+        cache.getDeclination(89.95, 0.05, 0, TIME_MILLIS);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    public void testExtremeAltitudesAreClamped() {
+        cache.getDeclination(45.0, 5.0, -20000, TIME_MILLIS);
+        cache.getDeclination(45.0, 5.0, -1, TIME_MILLIS);
+        cache.getDeclination(45.0, 5.0, 1e6, TIME_MILLIS);
+        cache.getDeclination(45.0, 5.0, 1e7, TIME_MILLIS);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    public void testLeastRecentlyUsedCellIsEvicted() {
+        for (int i = 0; i < CAPACITY; i++) {
+            cache.getDeclination(45.05, 5.05 + i * 0.1, 200, TIME_MILLIS);
+        }
+
+        // Using the first cell again makes the second one the least recently used.
+        cache.getDeclination(45.05, 5.05, 200, TIME_MILLIS);
+        cache.getDeclination(46.05, 5.05, 200, TIME_MILLIS);
+        assertEquals(CAPACITY + 1, cache.getMissCount());
+
+        cache.getDeclination(45.05, 5.05, 200, TIME_MILLIS);
+        assertEquals(CAPACITY + 1, cache.getMissCount());
+        cache.getDeclination(45.05, 5.15, 200, TIME_MILLIS);
+        assertEquals(CAPACITY + 2, cache.getMissCount());
+    }
+}
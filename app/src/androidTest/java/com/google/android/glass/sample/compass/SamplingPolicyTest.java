@@ -0,0 +1,115 @@
+package com.google.android.glass.sample.compass;
+
+import android.location.Location;
+import android.location.LocationManager;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the transitions of {@link SamplingPolicy} between the sensor rates and between the
+ * location modes, including the gaps between the thresholds that keep them from flapping.
+ */
+public class SamplingPolicyTest extends TestCase {
+
+    private static final long START_NANOS = TimeUnit.SECONDS.toNanos(100);
+    private static final long START_MILLIS = TimeUnit.SECONDS.toMillis(100);
+
+    /** About one meter of latitude, in degrees. */
+    private static final double METER_DEGREES = 1.0 / 111195.0;
+
+    private SamplingPolicy policy;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        policy = new SamplingPolicy();
+    }
+
+    public void testStartsStillAndTracking() {
+        assertEquals(SamplingPolicy.STILL_SENSOR_DELAY, policy.getSensorDelay());
+        assertEquals(SamplingPolicy.LocationMode.TRACKING, policy.getLocationMode());
+    }
+
+    public void testTurningSpeedsUpTheSensor() {
+        assertFalse(policy.onHeadingVelocity(9.0f, START_NANOS));
+        assertTrue(policy.onHeadingVelocity(-11.0f, START_NANOS + 1));
+        assertEquals(SamplingPolicy.TURNING_SENSOR_DELAY, policy.getSensorDelay());
+        assertFalse(policy.onHeadingVelocity(20.0f, START_NANOS + 2));
+    }
+
+    public void testSlowingDownBetweenTheThresholdsKeepsTheRate() {
+        policy.onHeadingVelocity(20.0f, START_NANOS);
+        long twoSeconds = TimeUnit.SECONDS.toNanos(2);
+        assertFalse(policy.onHeadingVelocity(5.0f, START_NANOS + twoSeconds));
+        assertEquals(SamplingPolicy.TURNING_SENSOR_DELAY, policy.getSensorDelay());
+    }
+
+    public void testStayingStillForASecondSlowsDownTheSensor() {
+        policy.onHeadingVelocity(20.0f, START_NANOS);
+        long second = TimeUnit.SECONDS.toNanos(1);
+        assertFalse(policy.onHeadingVelocity(1.0f, START_NANOS + second / 2));
+        assertFalse(policy.onHeadingVelocity(1.0f, START_NANOS + second));
+        assertTrue(policy.onHeadingVelocity(1.0f, START_NANOS + second + 1));
+        assertEquals(SamplingPolicy.STILL_SENSOR_DELAY, policy.getSensorDelay());
+    }
+
+    public void testStandingStillForAMinuteIsStationary() {
+        assertFalse(policy.onLocation(location(0, 0)));
+        assertFalse(policy.onLocation(location(5, TimeUnit.SECONDS.toMillis(30))));
+        assertFalse(policy.onLocation(location(-5, TimeUnit.SECONDS.toMillis(60))));
+        assertTrue(policy.onLocation(location(0, TimeUnit.SECONDS.toMillis(61))));
+        assertEquals(SamplingPolicy.LocationMode.STATIONARY, policy.getLocationMode());
+
+        // Walking away starts tracking again.
+        assertTrue(policy.onLocation(location(50, TimeUnit.SECONDS.toMillis(62))));
+        assertEquals(SamplingPolicy.LocationMode.TRACKING, policy.getLocationMode());
+    }
+
+    public void testInaccurateLocationsWidenTheStationaryRadius() {
+        Location first = location(0, 0);
+        first.setAccuracy(30.0f);
+        policy.onLocation(first);
+
+        Location second = location(25, TimeUnit.SECONDS.toMillis(61));
+        second.setAccuracy(30.0f);
+        assertTrue(policy.onLocation(second));
+        assertEquals(SamplingPolicy.LocationMode.STATIONARY, policy.getLocationMode());
+    }
+
+    public void testNoPlacesInRangeIsIdle() {
+        policy.onLocation(location(0, 0));
+        policy.onLocation(location(0, TimeUnit.SECONDS.toMillis(61)));
+
+        assertTrue(policy.setPlacesInRange(false));
+        assertEquals(SamplingPolicy.LocationMode.IDLE, policy.getLocationMode());
+        assertFalse(policy.onLocation(location(0, TimeUnit.SECONDS.toMillis(62))));
+        assertEquals(SamplingPolicy.LocationMode.IDLE, policy.getLocationMode());
+
+        assertTrue(policy.setPlacesInRange(true));
+        assertEquals(SamplingPolicy.LocationMode.STATIONARY, policy.getLocationMode());
+    }
+
+    public void testResetForgetsTheMotion() {
+        policy.onHeadingVelocity(20.0f, START_NANOS);
+        policy.onLocation(location(0, 0));
+        policy.onLocation(location(0, TimeUnit.SECONDS.toMillis(61)));
+
+        policy.reset();
+        assertEquals(SamplingPolicy.STILL_SENSOR_DELAY, policy.getSensorDelay());
+        assertEquals(SamplingPolicy.LocationMode.TRACKING, policy.getLocationMode());
+    }
+
+    /**
+     * Returns a location the specified number of meters north of the equator, the specified
+     * time after the start of the test.
+     */
+    private static Location location(double meters, long millis) {
+        Location location = new Location(LocationManager.GPS_PROVIDER);
+        location.setLatitude(meters * METER_DEGREES);
+        location.setLongitude(0.0);
+        location.setTime(START_MILLIS + millis);
+        return location;
+    }
+}
@@ -0,0 +1,26 @@
+package com.google.android.glass.sample.compass;
+
+import com.google.android.glass.sample.compass.util.Logger;
+
+import android.util.Log;
+
+/**
+ * Sends the log messages of the model and util classes to the Android log.
+ */
+class AndroidLogger implements Logger {
+
+    @Override
+    public void info(String tag, String message) {
+        Log.i(tag, message);
+    }
+
+    @Override
+    public void warn(String tag, String message, Throwable throwable) {
+        Log.w(tag, message, throwable);
+    }
+
+    @Override
+    public void error(String tag, String message, Throwable throwable) {
+        Log.e(tag, message, throwable);
+    }
+}
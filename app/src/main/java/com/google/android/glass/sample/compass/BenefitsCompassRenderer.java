@@ -4,10 +4,14 @@ import com.google.android.glass.sample.compass.model.Landmarks;
 import com.google.android.glass.sample.compass.model.Place;
 import com.google.android.glass.timeline.DirectRenderingCallback;
 
+import android.animation.ValueAnimator;
+import android.animation.ValueAnimator.AnimatorUpdateListener;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -17,8 +21,10 @@ import android.widget.FrameLayout;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
+import java.io.PrintWriter;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BenefitsCompassRenderer implements DirectRenderingCallback {
 
@@ -26,10 +32,21 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
 
     private static final float TOO_STEEP_PITCH_DEGREES = 50.0f;
 
+    /**
+     * The highest rate at which frames are drawn. Frames are only drawn when something on the
+     * compass has changed, so the actual rate is usually much lower.
+     */
     private static final int REFRESH_RATE_FPS = 45;
 
     private static final long FRAME_TIME_MILLIS = TimeUnit.SECONDS.toMillis(1) / REFRESH_RATE_FPS;
 
+    /**
+     * The time from drawing a frame to it being shown: the frame is posted at the end of drawing
+     * and appears at the next refresh of the 60 Hz display. The heading is extrapolated to that
+     * time to hide the latency.
+     */
+    private static final long FRAME_LATENCY_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
     private final TextView benefitNameView;
     private final TextView benefitDescrView;
 
@@ -47,17 +64,73 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
     private final RelativeLayout tipsContainer;
     private final RelativeLayout benefitssContainer;
     private final TextView tipsView;
+
+    /**
+     * The tips and benefit overlays change far less often than the compass strip under them, so
+     * they are drawn from cached bitmaps that are only rendered again when their text or layout
+     * changes. Their fade animations only change the alpha the bitmaps are drawn with.
+     */
+    private final ViewLayer tipsLayer;
+    private final ViewLayer benefitsLayer;
+
     private final OrientationManager orientationManager;
     private final Landmarks landmarks;
+    private final NearbyPlacesWorker nearbyPlacesWorker;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Held while the views are laid out on the main thread and while they are drawn on the
+     * render thread, so that a frame never sees a layout pass half done.
+     */
+    private final Object layoutLock = new Object();
+
+    /**
+     * The number of frame intervals in which nothing changed, so that no frame was drawn where
+     * the render thread would previously have drawn one.
+     */
+    private final AtomicLong skippedFrames = new AtomicLong();
+
+    /**
+     * The place whose name and description are shown, and how often they were set or left as
+     * they were. Each update that is skipped saves the text views a layout pass. The place is
+     * only accessed on the render thread.
+     */
+    private Place displayedBenefit;
+    private final AtomicLong benefitTextUpdates = new AtomicLong();
+    private final AtomicLong benefitTextSkips = new AtomicLong();
+
+    /** How long the frames that were drawn took, measured against the maximum refresh rate. */
+    private final FrameStats frameStats =
+            new FrameStats(TimeUnit.SECONDS.toNanos(1) / REFRESH_RATE_FPS);
+
+    /** Schedules a frame when the compass heading, its animation or its places change. */
+    private final BenefitsCompassView.OnRedrawListener redrawListener =
+            new BenefitsCompassView.OnRedrawListener() {
+
+        @Override
+        public void onRedrawNeeded(BenefitsCompassView view) {
+            requestRender();
+        }
+    };
+
+    /** Schedules a frame for each step of the tips and benefits fade animations. */
+    private final AnimatorUpdateListener fadeUpdateListener = new AnimatorUpdateListener() {
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animator) {
+            requestRender();
+        }
+    };
 
     private final BenefitsCompassListener benefitsCompassListener = new BenefitsCompassListener() {
 
         @Override
         public void onOrientationChanged(OrientationManager orientationManager) {
-            benefitsCompassView.setHeading(orientationManager.getHeading());
+            OrientationState state = orientationManager.getState();
+            benefitsCompassView.setOrientation(state);
 
             boolean oldTooSteep = isTooSteep;
-            isTooSteep = (Math.abs(orientationManager.getPitch()) > TOO_STEEP_PITCH_DEGREES);
+            isTooSteep = (Math.abs(state.getPitch()) > TOO_STEEP_PITCH_DEGREES);
             if (isTooSteep != oldTooSteep) {
                 updateTipsView();
             }
@@ -65,10 +138,7 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
 
         @Override
         public void onLocationChanged(OrientationManager orientationManager) {
-            Location location = orientationManager.getLocation();
-            List<Place> places = landmarks.getNearbyLandmarks(
-                    location.getLatitude(), location.getLongitude());
-            benefitsCompassView.setNearbyPlaces(places);
+            updateNearbyPlaces();
         }
 
         @Override
@@ -78,6 +148,37 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
         }
     };
 
+    /**
+     * The landmarks are loaded in the background; once they are available, the nearby places
+     * have to be computed again. The worker is controlled from the main thread.
+     */
+    private final Landmarks.OnLoadedListener landmarksLoadedListener =
+            new Landmarks.OnLoadedListener() {
+
+        @Override
+        public void onLandmarksLoaded(Landmarks landmarks) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    nearbyPlacesWorker.invalidate();
+                }
+            });
+        }
+    };
+
+    /** Hands the places computed by the worker to the compass view, on the worker thread. */
+    private final NearbyPlacesWorker.OnNearbyPlacesListener nearbyPlacesListener =
+            new NearbyPlacesWorker.OnNearbyPlacesListener() {
+
+        @Override
+        public void onNearbyPlaces(Location location, List<Place> places) {
+            benefitsCompassView.setNearbyPlaces(location, places);
+
+            // Until the landmarks are loaded there is no telling whether any are in range.
+            orientationManager.setPlacesInRange(!places.isEmpty() || !landmarks.isLoaded());
+        }
+    };
+
     /**
      * Creates a new instance of the {@code CompassRenderer} with the specified context,
      * orientation manager, and landmark collection.
@@ -94,11 +195,17 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
         tipsView = (TextView) frameLayout.findViewById(R.id.tips_view);
         benefitNameView = (TextView) frameLayout.findViewById(R.id.benefits_name);
         benefitDescrView = (TextView) frameLayout.findViewById(R.id.benefits_description);
+        tipsLayer = new ViewLayer(tipsContainer);
+        benefitsLayer = new ViewLayer(benefitssContainer);
 
         this.orientationManager = orientationManager;
         this.landmarks = landmarks;
+        this.nearbyPlacesWorker = new NearbyPlacesWorker(landmarks, nearbyPlacesListener);
+        landmarks.setOnLoadedListener(landmarksLoadedListener);
 
-        benefitsCompassView.setOrientationManager(this.orientationManager);
+        benefitsCompassView.setOnRedrawListener(redrawListener);
+        tipsContainer.animate().setUpdateListener(fadeUpdateListener);
+        benefitssContainer.animate().setUpdateListener(fadeUpdateListener);
         this.orientationManager.setBenefitsCompassListener(benefitsCompassListener);
     }
 
@@ -121,6 +228,11 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
     public void surfaceDestroyed(SurfaceHolder holder) {
         surfaceHolder = null;
         updateRenderingState();
+        Log.i(TAG, "Frame stats: " + frameStats.getSummary());
+        Log.i(TAG, "Front benefit text: " + benefitTextUpdates.get() + " updates, "
+                + benefitTextSkips.get() + " skipped");
+        Log.i(TAG, "Overlay layers rendered: tips " + tipsLayer.getRenderCount() + ", benefits "
+                + benefitsLayer.getRenderCount());
     }
 
     @Override
@@ -135,27 +247,77 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
 
         if (shouldRender != isRendering) {
             if (shouldRender) {
+                nearbyPlacesWorker.start();
                 orientationManager.start();
 
                 if (orientationManager.hasLocation()) {
-                    Location location = orientationManager.getLocation();
-                    List<Place> nearbyPlaces = landmarks.getNearbyLandmarks(
-                        location.getLatitude(), location.getLongitude());
-                    benefitsCompassView.setNearbyPlaces(nearbyPlaces);
+                    updateNearbyPlaces();
                 }
 
-                renderThread = new RenderThread();
+                renderThread = new RenderThread(surfaceHolder);
                 renderThread.start();
             } else {
                 renderThread.quit();
                 renderThread = null;
 
                 orientationManager.stop();
-
+                nearbyPlacesWorker.stop();
             }
         }
     }
 
+    /**
+     * Returns the number of frames that were not drawn because nothing on the compass changed,
+     * counted in intervals of the maximum refresh rate.
+     */
+    public long getSkippedFrameCount() {
+        return skippedFrames.get();
+    }
+
+    /**
+     * Prints the frame timing, nearby place, front benefit and overlay layer statistics, for the
+     * service's {@code dumpsys} output.
+     */
+    public void dump(String prefix, PrintWriter writer) {
+        frameStats.dump(prefix, writer);
+        writer.print(prefix);
+        writer.print("Skipped frames: ");
+        writer.println(skippedFrames.get());
+        writer.print(prefix);
+        writer.print("Stale nearby place updates: ");
+        writer.println(nearbyPlacesWorker.getStaleUpdateCount());
+        writer.print(prefix);
+        writer.print("Front benefit text updates: ");
+        writer.print(benefitTextUpdates.get());
+        writer.print(" (skipped: ");
+        writer.print(benefitTextSkips.get());
+        writer.println(")");
+        writer.print(prefix);
+        writer.print("Overlay layers rendered: tips ");
+        writer.print(tipsLayer.getRenderCount());
+        writer.print(", benefits ");
+        writer.println(benefitsLayer.getRenderCount());
+    }
+
+    /**
+     * Schedules a frame to be drawn. Requests made before the render thread gets to draw are
+     * coalesced into a single frame.
+     */
+    private void requestRender() {
+        RenderThread thread = renderThread;
+        if (thread != null) {
+            thread.requestFrame();
+        }
+    }
+
+    /**
+     * Schedules the places near the user's current location to be computed in the background.
+     * They are handed to the compass view by {@link #nearbyPlacesListener}.
+     */
+    private void updateNearbyPlaces() {
+        nearbyPlacesWorker.update(orientationManager.getState().getLocation());
+    }
+
     /**
      * Requests that the views redo their layout. This must be called manually every time the
      * tips view's text is updated because this layout doesn't exist in a GUI thread where those
@@ -167,15 +329,33 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
         int measuredWidth = View.MeasureSpec.makeMeasureSpec(surfaceWidth, View.MeasureSpec.EXACTLY);
         int measuredHeight = View.MeasureSpec.makeMeasureSpec(surfaceHeight, View.MeasureSpec.EXACTLY);
 
-        frameLayout.measure(measuredWidth, measuredHeight);
-        frameLayout.layout(0, 0, frameLayout.getMeasuredWidth(), frameLayout.getMeasuredHeight());
+        synchronized (layoutLock) {
+            frameLayout.measure(measuredWidth, measuredHeight);
+            frameLayout.layout(0, 0, frameLayout.getMeasuredWidth(),
+                    frameLayout.getMeasuredHeight());
+            tipsLayer.invalidate();
+            benefitsLayer.invalidate();
+        }
+        requestRender();
     }
 
     /**
-     * Repaints the compass.
+     * Repaints the compass. This is only called on the render thread. The orientation and the
+     * places are read from snapshots, but the views themselves are drawn under
+     * {@link #layoutLock}, since the main thread lays them out again when the tips change.
+     * <p>
+     * Rather than drawing the whole layout, only the compass strip is drawn in full; the
+     * overlays on top of it are drawn from their cached layers, in the same order as in the
+     * layout. The time spent waiting for the canvas, drawing and posting it is recorded in
+     * {@link #frameStats}.
+     * <p>
+     * If the thread is asked to quit while it waits for the canvas, the canvas is only cleared
+     * and posted, since the surface is about to go away.
      */
-    private synchronized void repaint() {
+    private void repaint(RenderThread thread) {
+        SurfaceHolder surfaceHolder = thread.surfaceHolder;
         Canvas canvas = null;
+        long lockStart = SystemClock.elapsedRealtimeNanos();
 
         try {
             canvas = surfaceHolder.lockCanvas();
@@ -184,25 +364,65 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
         }
 
         if (canvas != null) {
-            updateFrontBenefits();
+            long drawStart = SystemClock.elapsedRealtimeNanos();
             canvas.drawColor(Color.BLACK);
-            frameLayout.draw(canvas);
+            if (!thread.isRunning()) {
+                try {
+                    surfaceHolder.unlockCanvasAndPost(canvas);
+                } catch (RuntimeException e) {
+                    Log.d(TAG, "unlockCanvasAndPost failed", e);
+                }
+                return;
+            }
+
+            synchronized (layoutLock) {
+                benefitsCompassView.setFrameTime(drawStart + FRAME_LATENCY_NANOS);
+                canvas.save();
+                canvas.translate(benefitsCompassView.getLeft(), benefitsCompassView.getTop());
+                benefitsCompassView.draw(canvas);
+                canvas.restore();
+                // The compass view selects the front benefit while it draws, so its text is
+                // updated afterwards, in time for the overlays of the same frame.
+                updateFrontBenefits();
+                tipsLayer.draw(canvas);
+                benefitsLayer.draw(canvas);
+            }
 
+            long postStart = SystemClock.elapsedRealtimeNanos();
             try {
                 surfaceHolder.unlockCanvasAndPost(canvas);
             } catch (RuntimeException e) {
                 Log.d(TAG, "unlockCanvasAndPost failed", e);
             }
+
+            frameStats.recordFrame(drawStart - lockStart, postStart - drawStart,
+                    SystemClock.elapsedRealtimeNanos() - postStart);
         }
     }
 
+    /**
+     * Shows the name and description of the place in front of the user. Setting the text of a
+     * view lays it out again even if the text is the same, so this is only done when the place
+     * has changed; the compass view keeps the selection from changing on every small movement
+     * of the head. This must be called after the compass view has drawn the frame, which is
+     * when it selects the place, so that the text never lags a frame behind.
+     */
     private void updateFrontBenefits() {
         Place frontBenefit = getFrontBenefit();
+        if (frontBenefit == null) {
+            return;
+        }
 
-        if (frontBenefit != null) {
-            benefitNameView.setText(frontBenefit.getName());
-            benefitDescrView.setText(frontBenefit.getDescription());
+        if (frontBenefit.equals(displayedBenefit)) {
+            benefitTextSkips.incrementAndGet();
+            return;
         }
+
+        displayedBenefit = frontBenefit;
+        benefitNameView.setText(frontBenefit.getName());
+        benefitDescrView.setText(frontBenefit.getDescription());
+        benefitsLayer.invalidate();
+        benefitTextUpdates.incrementAndGet();
     }
 
     /**
@@ -214,11 +434,15 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
         float benefitsAlpha = 0.0f;
 
         if (isTooSteep) {
-            tipsView.setText(R.string.pitch_too_steep);
-            doLayout();
+            synchronized (layoutLock) {
+                tipsView.setText(R.string.pitch_too_steep);
+                doLayout();
+            }
         } else if (hasMagneticInterference) {
-            tipsView.setText(R.string.magnetic_interference);
-            doLayout();
+            synchronized (layoutLock) {
+                tipsView.setText(R.string.magnetic_interference);
+                doLayout();
+            }
         } else {
             tipsAlpha = 0.0f;
             benefitsAlpha = 1.0f;
@@ -232,33 +456,93 @@ public class BenefitsCompassRenderer implements DirectRenderingCallback {
         }
     }
 
+    /**
+     * Draws a frame whenever one has been requested, at most once every
+     * {@link #FRAME_TIME_MILLIS}, and waits without using the CPU while nothing changes.
+     */
     private class RenderThread extends Thread {
+        private final SurfaceHolder surfaceHolder;
         private boolean shouldRun;
+        private boolean frameRequested;
 
-        public RenderThread() {
+        public RenderThread(SurfaceHolder surfaceHolder) {
+            this.surfaceHolder = surfaceHolder;
             shouldRun = true;
+            // The first frame is drawn as soon as the thread starts.
+            frameRequested = true;
+        }
+
+        public synchronized void requestFrame() {
+            frameRequested = true;
+            notify();
         }
 
-        private synchronized boolean shouldRun() {
+        /**
+         * Asks the thread to quit and waits until it has. A frame that is being drawn is
+         * finished first, so once this returns the surface can be released and another thread
+         * can start drawing the same views.
+         */
+        public void quit() {
+            synchronized (this) {
+                shouldRun = false;
+                notify();
+            }
+            try {
+                join();
+            } catch (InterruptedException e) {
+                Log.d(TAG, "Interrupted while waiting for the render thread", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Returns whether the thread has not been asked to quit yet.
+         */
+        public synchronized boolean isRunning() {
             return shouldRun;
         }
 
-        public synchronized void quit() {
-            shouldRun = false;
+        /**
+         * Waits until a frame has been requested or the thread has been asked to quit.
+         *
+         * @return true if a frame should be drawn, false if the thread should quit
+         */
+        private synchronized boolean awaitFrame() {
+            while (shouldRun && !frameRequested) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Log.d(TAG, "Render thread interrupted", e);
+                }
+            }
+            frameRequested = false;
+            return shouldRun;
         }
 
         @Override
         public void run() {
-            while (shouldRun()) {
+            long lastFrameStart = SystemClock.elapsedRealtime();
+            while (awaitFrame()) {
                 long frameStart = SystemClock.elapsedRealtime();
-                repaint();
+                long intervals = (frameStart - lastFrameStart) / FRAME_TIME_MILLIS;
+                if (intervals > 1) {
+                    skippedFrames.addAndGet(intervals - 1);
+                }
+                lastFrameStart = frameStart;
+
+                repaint(this);
                 long frameLength = SystemClock.elapsedRealtime() - frameStart;
 
+                // Requests that arrive while sleeping are drawn together in the next frame.
                 long sleepTime = FRAME_TIME_MILLIS - frameLength;
                 if (sleepTime > 0) {
                     SystemClock.sleep(sleepTime);
                 }
             }
+
+            // The layers are only drawn on this thread, so their bitmaps are freed here too.
+            tipsLayer.release();
+            benefitsLayer.release();
         }
     }
 
@@ -1,12 +1,11 @@
 package com.google.android.glass.sample.compass;
 
+import com.google.android.glass.sample.compass.model.BearingIndex;
 import com.google.android.glass.sample.compass.model.Place;
+import com.google.android.glass.sample.compass.util.HeadingFilter;
+import com.google.android.glass.sample.compass.util.LocalFrame;
 import com.google.android.glass.sample.compass.util.MathUtils;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
-import android.animation.ValueAnimator.AnimatorUpdateListener;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -17,15 +16,17 @@ import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.Typeface;
 import android.location.Location;
+import android.os.SystemClock;
 import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
-import android.view.animation.LinearInterpolator;
 
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class BenefitsCompassView extends View {
 
@@ -33,48 +34,113 @@ public class BenefitsCompassView extends View {
     private static final float TICK_WIDTH = 2;
     private static final float TICK_HEIGHT = 10;
     private static final float DIRECTION_TEXT_HEIGHT = 40.0f;
-    private static final float PLACE_TEXT_HEIGHT = 25.0f;
+    static final float PLACE_TEXT_HEIGHT = 25.0f;
     private static final float NEAR_PLACE_TEXT_HEIGHT = 30.0f;
-    private static final float PLACE_PIN_WIDTH = 20.0f;
-    private static final float PLACE_TEXT_LEADING = 4.0f;
-    private static final float PLACE_TEXT_MARGIN = 8.0f;
+    static final float PLACE_PIN_WIDTH = 20.0f;
+    static final float PLACE_TEXT_LEADING = 4.0f;
+    static final float PLACE_TEXT_MARGIN = 8.0f;
 
     /**
      * The maximum number of places names to allow to stack vertically underneath the compass
      * direction labels.
      */
-    private static final int MAX_OVERLAPPING_PLACE_NAMES = 4;
+    static final int MAX_OVERLAPPING_PLACE_NAMES = 4;
 
     /**
-     * If the difference between two consecutive headings is less than this value, the canvas will
-     * be redrawn immediately rather than animated.
+     * While the heading is changing faster than this, in degrees per second, frames keep being
+     * drawn at the predicted heading between sensor updates.
      */
-    private static final float MIN_DISTANCE_TO_ANIMATE = 15.0f;
+    private static final float MIN_ANIMATED_VELOCITY = 1.0f;
 
-    /** The actual heading that represents the direction that the user is facing. */
-    private float heading;
+    /**
+     * Interface definition for a callback to be invoked when the compass needs to be drawn
+     * again. The view is drawn onto a surface rather than attached to a window, so
+     * {@link #invalidate()} alone does not cause it to be redrawn.
+     */
+    public interface OnRedrawListener {
+
+        /**
+         * Called when the heading or the nearby places have changed, or while the heading is
+         * being extrapolated between sensor updates.
+         */
+        void onRedrawNeeded(BenefitsCompassView view);
+    }
 
     /**
-     * Represents the heading that is currently being displayed when the view is drawn. This is
-     * used during animations, to keep track of the heading that should be drawn on the current
-     * frame, which may be different than the desired end point.
+     * An immutable snapshot of the nearby places and the location they are relative to. A new
+     * snapshot is published whenever either changes, and each frame reads the latest
+     * one once, so drawing never has to lock out the thread that updates the places. The places
+     * are sorted by bearing once, on the thread that publishes the snapshot, and both the markers
+     * and the front benefit use that order and those bearings.
      */
-    private float animatedHeading;
+    private static final class NearbyPlaces {
+        final Location location;
+        final BearingIndex bearings;
+
+        NearbyPlaces(Location location, List<Place> places) {
+            this.location = location;
+            this.bearings = new BearingIndex(location.getLatitude(), location.getLongitude(),
+                    places);
+        }
+    }
 
-    private OrientationManager orientationManager;
-    private List<Place> nearbyBenefits;
-    private Place frontBenefit;
+    /**
+     * The latest orientation of the user, whose heading is extrapolated to the time each frame
+     * is shown. Written on the main thread and read while drawing.
+     */
+    private volatile OrientationState orientation;
+
+    /** The time the frame being drawn will be shown, or 0 to use the current time. */
+    private long frameTimeNanos;
+
+    private volatile NearbyPlaces nearbyPlaces;
+
+    /**
+     * The place in front of the user, selected on each frame with a binary search over the
+     * bearings of the nearby places, which are only computed when the places or the user's
+     * location change.
+     */
+    private final FrontBenefitTracker frontBenefitTracker = new FrontBenefitTracker();
+    private volatile Place frontBenefit;
+    private OnRedrawListener redrawListener;
+
+    /**
+     * The markers for the nearby places in order of bearing, whose bearings, distances and labels
+     * are updated only when a new {@link NearbyPlaces} snapshot is published or the view is
+     * resized, and a pool of unused markers. These are only accessed while drawing.
+     */
+    private List<PlaceMarker> markers;
+    private List<PlaceMarker> nextMarkers;
+    private final Map<Place, PlaceMarker> markersByPlace;
+    private final List<PlaceMarker> markerPool;
+    private NearbyPlaces markersSource;
+    private int markersGeneration;
+    private int markersWidth;
+    private int markersHeight;
+
+    /** How far the widest label extends to the right of its pin, in degrees. */
+    private float maxLabelDegrees;
+
+    /**
+     * The compass directions and ticks for a full turn, pre-rendered for the current view size
+     * with enough margin on both sides to cover the view at any heading. They are drawn as an
+     * alpha mask in the color of {@link #ribbonPaint}. These are only accessed while drawing.
+     */
+    private Bitmap ribbonBitmap;
+    private int ribbonWidth;
+    private int ribbonHeight;
+    private int ribbonOriginX;
 
     private final Paint paint;
     private final Paint tickPaint;
+    private final Paint ribbonPaint;
     private final TextPaint benefitPaint;
     private final TextPaint frontBenefitPaint;
     private final Bitmap placeBitmap;
     private final Rect textBounds;
-    private final List<Rect> allBounds;
+    private final LabelLayout labelLayout;
     private final NumberFormat distanceFormat;
     private final String[] directions;
-    private final ValueAnimator valueAnimator;
 
     public BenefitsCompassView(Context context) {
         this(context, null, 0);
@@ -100,6 +166,9 @@ public class BenefitsCompassView extends View {
         tickPaint.setAntiAlias(true);
         tickPaint.setColor(Color.GRAY);
 
+        ribbonPaint = new Paint();
+        ribbonPaint.setColor(Color.GRAY);
+
         benefitPaint = new TextPaint();
         benefitPaint.setStyle(Paint.Style.FILL);
         benefitPaint.setAntiAlias(true);
@@ -114,8 +183,13 @@ public class BenefitsCompassView extends View {
         frontBenefitPaint.setTextSize(NEAR_PLACE_TEXT_HEIGHT);
         frontBenefitPaint.setTypeface(Typeface.create("sans-serif", Typeface.BOLD));
 
+        markers = new ArrayList<PlaceMarker>();
+        nextMarkers = new ArrayList<PlaceMarker>();
+        markersByPlace = new HashMap<Place, PlaceMarker>();
+        markerPool = new ArrayList<PlaceMarker>();
+
         textBounds = new Rect();
-        allBounds = new ArrayList<Rect>();
+        labelLayout = new LabelLayout();
 
         distanceFormat = NumberFormat.getNumberInstance();
         distanceFormat.setMinimumFractionDigits(0);
@@ -123,29 +197,22 @@ public class BenefitsCompassView extends View {
 
         placeBitmap = BitmapFactory.decodeResource(context.getResources(), R.drawable.place_mark);
 
-        // We use NaN to indicate that the compass is being drawn for the first
-        // time, so that we can jump directly to the starting orientation
-        // instead of spinning from a default value of 0.
-        animatedHeading = Float.NaN;
-
         directions = context.getResources().getStringArray(R.array.direction_abbreviations);
-
-        valueAnimator = new ValueAnimator();
-        setupAnimator();
     }
 
+    /**
+     * Returns the nearby place in front of the user as of the last frame, or null if there has
+     * not been one yet. This can be called on any thread.
+     */
     public Place getFrontBenefit() {
         return frontBenefit;
     }
 
     /**
-     * Sets the instance of {@link OrientationManager} that this view will use to get the current
-     * heading and location.
-     *
-     * @param orientationManager the instance of {@code OrientationManager} that this view will use
+     * Sets the listener that is notified when the compass needs to be drawn again.
      */
-    public void setOrientationManager(OrientationManager orientationManager) {
-        this.orientationManager = orientationManager;
+    public void setOnRedrawListener(OnRedrawListener listener) {
+        this.redrawListener = listener;
     }
 
     /**
@@ -154,29 +221,45 @@ public class BenefitsCompassView extends View {
      * @return the current heading.
      */
     public float getHeading() {
-        return heading;
+        OrientationState state = orientation;
+        return (state != null) ? state.getHeading() : 0;
     }
 
     /**
-     * Sets the current heading in degrees and redraws the compass. If the angle is not between 0
-     * and 360, it is shifted to be in that range.
+     * Sets the user's current orientation and redraws the compass. The compass is drawn at the
+     * heading predicted for the time each frame is shown, so it follows head movements smoothly
+     * even though the sensors report them less often than frames are drawn.
      *
-     * @param degrees the current heading
+     * @param state the user's current orientation
      */
-    public void setHeading(float degrees) {
-        heading = MathUtils.mod(degrees, 360.0f);
-        animateTo(heading);
+    public void setOrientation(OrientationState state) {
+        orientation = state;
+        requestRedraw();
     }
 
     /**
-     * Sets the list of nearby places that the compass should display. This list is recalculated
-     * whenever the user's location changes, so that only locations within a certain distance will
-     * be displayed.
+     * Sets the time that the next frame will be shown, which the heading is extrapolated to. This
+     * must be called on the thread that draws the view.
      *
-     * @param places the list of {@code Place}s that should be displayed
+     * @param timeNanos the time in the {@link android.os.SystemClock#elapsedRealtimeNanos()}
+     *         time base
      */
-    public void setNearbyPlaces(List<Place> places) {
-        nearbyBenefits = places;
+    public void setFrameTime(long timeNanos) {
+        frameTimeNanos = timeNanos;
+    }
+
+    /**
+     * Sets the list of nearby places that the compass should display and the location that
+     * their bearings and distances are computed from. Both are published together, so a frame
+     * never sees the places of one update with the location of another. This can be called on
+     * any thread, which also computes the bearings used by {@link #getFrontBenefit()}.
+     *
+     * @param location the user's current location
+     * @param places the places near the user, which must not be modified afterwards
+     */
+    public void setNearbyPlaces(Location location, List<Place> places) {
+        nearbyPlaces = new NearbyPlaces(location, places);
+        requestRedraw();
     }
 
     @Override
@@ -189,19 +272,86 @@ public class BenefitsCompassView extends View {
         float centerX = getWidth() / 2.0f;
         float centerY = getHeight() / 2.0f;
 
-        canvas.save();
-        canvas.translate(-animatedHeading * pixelsPerDegree + centerX, centerY);
+        // The state shared with the main thread is read once, so the whole frame is drawn from
+        // a consistent snapshot even if it changes in the meantime.
+        OrientationState state = orientation;
+        NearbyPlaces nearby = nearbyPlaces;
+        if (state == null) {
+            return;
+        }
+
+        long timeNanos = (frameTimeNanos != 0) ? frameTimeNanos
+                : SystemClock.elapsedRealtimeNanos();
+        float displayedHeading = state.predictHeading(timeNanos);
 
-        // In order to ensure that places on a boundary close to 0 or 360 get drawn correctly, we
-        // draw them three times; once to the left, once at the "true" bearing, and once to the
-        // right.
-        for (int i = -1; i <= 1; i++) {
-            drawPlaces(canvas, pixelsPerDegree, i * pixelsPerDegree * 360);
+        canvas.save();
+        canvas.translate(-displayedHeading * pixelsPerDegree + centerX, centerY);
+
+        if (nearby != null) {
+            updateMarkers(nearby, pixelsPerDegree);
+            frontBenefit = frontBenefitTracker.update(nearby.bearings, displayedHeading);
+
+            // Only the places whose pin or label falls within the 90 degrees shown around the
+            // heading are drawn.
+            float fromDegrees = displayedHeading - 45.0f - maxLabelDegrees;
+            float toDegrees = displayedHeading + 45.0f + (PLACE_PIN_WIDTH / 2) / pixelsPerDegree;
+
+            // In order to ensure that places on a boundary close to 0 or 360 get drawn
+            // correctly, the visible window is also checked against the copies of the compass
+            // one turn to the left and to the right. The label layout is the same for each copy.
+            for (int i = -1; i <= 1; i++) {
+                drawPlaces(canvas, pixelsPerDegree, i * pixelsPerDegree * 360,
+                        fromDegrees - i * 360, toDegrees - i * 360);
+            }
         }
 
-        drawCompassDirections(canvas, pixelsPerDegree);
+        if (ribbonBitmap == null || ribbonWidth != getWidth() || ribbonHeight != getHeight()) {
+            createRibbon(pixelsPerDegree);
+        }
+        canvas.drawBitmap(ribbonBitmap, -ribbonOriginX, -ribbonBitmap.getHeight() / 2,
+                ribbonPaint);
 
         canvas.restore();
+
+        // While the head is turning, keep drawing frames at the predicted heading until the
+        // prediction runs out; the next sensor update will request another frame anyway.
+        if (Math.abs(state.getAngularVelocity()) > MIN_ANIMATED_VELOCITY
+                && timeNanos - state.getTimestampNanos() < HeadingFilter.MAX_PREDICTION_NANOS
+                && redrawListener != null) {
+            redrawListener.onRedrawNeeded(this);
+        }
+    }
+
+    /**
+     * Renders the compass directions into {@link #ribbonBitmap} for the current view size. The
+     * ribbon only changes when the size of the view does, so each frame just draws the visible
+     * part of the bitmap instead of measuring and drawing the text again.
+     *
+     * @param pixelsPerDegree the size, in pixels, of one degree step
+     */
+    private void createRibbon(float pixelsPerDegree) {
+        if (ribbonBitmap != null) {
+            ribbonBitmap.recycle();
+        }
+
+        float maxHalfTextWidth = 0;
+        for (String direction : directions) {
+            maxHalfTextWidth = Math.max(maxHalfTextWidth, paint.measureText(direction) / 2);
+        }
+
+        // The ribbon extends half a view width past 0 and 360 degrees (plus room for the text
+        // that straddles the edge), so that it covers the view when the heading is close to 0.
+        ribbonOriginX = (int) Math.ceil(45.0f * pixelsPerDegree + maxHalfTextWidth);
+        int height = 2 * (int) Math.ceil(DIRECTION_TEXT_HEIGHT);
+        ribbonBitmap = Bitmap.createBitmap(
+                (int) Math.ceil(360.0f * pixelsPerDegree) + 2 * ribbonOriginX, height,
+                Bitmap.Config.ALPHA_8);
+        ribbonWidth = getWidth();
+        ribbonHeight = getHeight();
+
+        Canvas canvas = new Canvas(ribbonBitmap);
+        canvas.translate(ribbonOriginX, height / 2);
+        drawCompassDirections(canvas, pixelsPerDegree);
     }
 
     /**
@@ -213,8 +363,8 @@ public class BenefitsCompassView extends View {
     private void drawCompassDirections(Canvas canvas, float pixelsPerDegree) {
         float degreesPerTick = 360.0f / directions.length;
 
-        // We draw two extra ticks/labels on each side of the view so that the
-        // full range is visible even when the heading is approximately 0.
+        // We draw two extra ticks/labels on each side of the ribbon so that the
+        // full range is covered even when the heading is approximately 0.
         for (int i = -2; i <= directions.length + 2; i++) {
             if (MathUtils.mod(i, 2) == 0) {
                 // Draw a text label for the even indices.
@@ -233,172 +383,164 @@ public class BenefitsCompassView extends View {
     }
 
     /**
-     * Draws the pins and text labels for the nearby list of places.
+     * Draws the pins and text labels for the nearby places whose bearings fall within the
+     * specified range, at the positions computed by the label layout.
      *
      * @param canvas the {@link android.graphics.Canvas} upon which to draw
      * @param pixelsPerDegree the size, in pixels, of one degree step
      * @param offset the number of pixels to translate the drawing operations by in the horizontal
      *         direction; used because place names are drawn three times to get proper wraparound
+     * @param fromDegrees the smallest bearing to draw
+     * @param toDegrees the largest bearing to draw
      */
-    private void drawPlaces(Canvas canvas, float pixelsPerDegree, float offset) {
-        if (orientationManager.hasLocation() && nearbyBenefits != null) {
-            synchronized (nearbyBenefits) {
-                Location userLocation = orientationManager.getLocation();
-                double latitude1 = userLocation.getLatitude();
-                double longitude1 = userLocation.getLongitude();
-
-                allBounds.clear();
-
-                // Loop over the list of nearby places (those within 10 km of the user's current
-                // location), and compute the relative bearing from the user's location to the
-                // place's location. This determines the position on the compass view where the
-                // pin will be drawn.
-                Place front = nearbyBenefits.get(0);
-                double smallestDifference = 360;
-                for (Place place : nearbyBenefits) {
-                    double latitude2 = place.getLatitude();
-                    double longitude2 = place.getLongitude();
-                    float bearing = MathUtils.getBearing(latitude1, longitude1, latitude2,
-                            longitude2);
-
-                    String name = place.getName();
-                    double distanceKm = MathUtils.getDistance(latitude1, longitude1, latitude2,
-                            longitude2);
-                    String text = getContext().getResources().getString(
-                            R.string.place_text_format, name, distanceFormat.format(distanceKm));
-
-                    // Measure the text and offset the text bounds to the location where the text
-                    // will finally be drawn.
-                    Rect textBounds = new Rect();
-                    benefitPaint.getTextBounds(text, 0, text.length(), textBounds);
-                    textBounds.offsetTo((int) (offset + bearing * pixelsPerDegree
-                            + PLACE_PIN_WIDTH / 2 + PLACE_TEXT_MARGIN), canvas.getHeight() / 2
-                            - (int) PLACE_TEXT_HEIGHT + (int) (distanceKm * 5.0));
-
-                    // Extend the bounds rectangle to include the pin icon and a small margin
-                    // to the right of the text, for the overlap calculations below.
-                    textBounds.left -= PLACE_PIN_WIDTH + PLACE_TEXT_MARGIN;
-                    textBounds.right += PLACE_TEXT_MARGIN;
-
-                    // This loop attempts to find the best vertical position for the string by
-                    // starting at the bottom of the display and checking to see if it overlaps
-                    // with any other labels that were already drawn. If there is an overlap, we
-                    // move up and check again, repeating this process until we find a vertical
-                    // position where there is no overlap, or when we reach the limit on
-                    // overlapping place names.
-                    boolean intersects;
-                    int numberOfTries = 0;
-                    do {
-                        intersects = false;
-                        numberOfTries++;
-                        textBounds.offset(0, (int) -(PLACE_TEXT_HEIGHT + PLACE_TEXT_LEADING));
-
-                        for (Rect existing : allBounds) {
-                            if (Rect.intersects(existing, textBounds)) {
-                                intersects = true;
-                                break;
-                            }
-                        }
-                    } while (intersects && numberOfTries <= MAX_OVERLAPPING_PLACE_NAMES);
-
-                    // Only draw the string if it would not go high enough to overlap the compass
-                    // directions. This means some places may not be drawn, even if they're nearby.
-                    if (numberOfTries <= MAX_OVERLAPPING_PLACE_NAMES) {
-                        allBounds.add(textBounds);
-
-                        canvas.drawBitmap(placeBitmap, offset + bearing * pixelsPerDegree
-                                - PLACE_PIN_WIDTH / 2, textBounds.top + 2, paint);
-                        canvas.drawText(text,
-                                offset + bearing * pixelsPerDegree + PLACE_PIN_WIDTH / 2
-                                + PLACE_TEXT_MARGIN, textBounds.top + PLACE_TEXT_HEIGHT,
-                                benefitPaint);
-                    }
-
-                    double difference = MathUtils.getAngleDifference(bearing, heading);
-                    if (difference < smallestDifference) {
-                        smallestDifference = difference;
-                        front = place;
-                    }
-                }
-                frontBenefit = front;
+    private void drawPlaces(Canvas canvas, float pixelsPerDegree, float offset,
+            float fromDegrees, float toDegrees) {
+        if (toDegrees < 0 || fromDegrees >= 360.0f) {
+            return;
+        }
+
+        // The markers are sorted by bearing, so the visible ones are found with a binary search.
+        // Indexed loops are used because this runs several times per frame and must not
+        // allocate iterators.
+        for (int i = findFirstMarker(fromDegrees); i < markers.size(); i++) {
+            PlaceMarker marker = markers.get(i);
+            if (marker.bearing > toDegrees) {
+                break;
+            }
+
+            // Labels that would go high enough to overlap the compass directions are not drawn.
+            // This means some places may not be drawn, even if they're nearby.
+            if (marker.labelVisible) {
+                float x = offset + marker.bearing * pixelsPerDegree;
+                canvas.drawBitmap(placeBitmap, x - PLACE_PIN_WIDTH / 2, marker.labelTop + 2,
+                        paint);
+                canvas.drawText(marker.label, x + PLACE_PIN_WIDTH / 2 + PLACE_TEXT_MARGIN,
+                        marker.labelTop + PLACE_TEXT_HEIGHT, benefitPaint);
             }
         }
     }
 
     /**
-     * Sets up a {@link android.animation.ValueAnimator} that will be used to animate the compass
-     * when the distance between two sensor events is large.
+     * Returns the index of the first marker whose bearing is at least the specified value.
      */
-    private void setupAnimator() {
-        valueAnimator.setInterpolator(new LinearInterpolator());
-        valueAnimator.setDuration(250);
+    private int findFirstMarker(float bearing) {
+        int low = 0;
+        int high = markers.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (markers.get(middle).bearing < bearing) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
 
-        // Notifies us at each frame of the animation so we can redraw the view.
-        valueAnimator.addUpdateListener(new AnimatorUpdateListener() {
+    /**
+     * Brings the markers up to date with the nearby places and the user's location. Bearings,
+     * distances and labels only change when the user moves or the nearby set changes, so this
+     * does nothing on most frames; when it does run, the markers take the order and bearings of
+     * the snapshot's {@link BearingIndex}, a label is only formatted again if its rounded distance
+     * has changed, and the label layout is computed again.
+     *
+     * @param nearby the latest snapshot of the nearby places
+     * @param pixelsPerDegree the size, in pixels, of one degree step
+     */
+    private void updateMarkers(NearbyPlaces nearby, float pixelsPerDegree) {
+        // The label layout also depends on the size of the view.
+        if (nearby == markersSource && getWidth() == markersWidth
+                && getHeight() == markersHeight) {
+            return;
+        }
 
-            @Override
-            public void onAnimationUpdate(ValueAnimator animator) {
-                animatedHeading = MathUtils.mod((Float) valueAnimator.getAnimatedValue(), 360.0f);
-                invalidate();
-            }
-        });
-
-        // Notifies us when the animation is over. During an animation, the user's head may have
-        // continued to move to a different orientation than the original destination angle of the
-        // animation. Since we can't easily change the animation goal while it is running, we call
-        // animateTo() again, which will either redraw at the new orientation (if the difference is
-        // small enough), or start another animation to the new heading. This seems to produce
-        // fluid results.
-        valueAnimator.addListener(new AnimatorListenerAdapter() {
-
-            @Override
-            public void onAnimationEnd(Animator animator) {
-                animateTo(heading);
+        // The bearings change whenever the user moves, so the markers are put in the order of the
+        // index even if the places are the same.
+        BearingIndex bearings = nearby.bearings;
+        if (nearby != markersSource) {
+            matchMarkers(bearings);
+        }
+
+        // The nearby places are close enough for a local projection to be accurate to a small
+        // fraction of a pixel.
+        Location location = nearby.location;
+        LocalFrame frame = new LocalFrame(location.getLatitude(), location.getLongitude());
+        for (int i = 0; i < markers.size(); i++) {
+            PlaceMarker marker = markers.get(i);
+            Place place = marker.place;
+            marker.bearing = bearings.getBearing(i);
+            marker.distanceKm = frame.getDistance(place.getLatitude(), place.getLongitude());
+
+            int distanceTenths = Math.round(marker.distanceKm * 10);
+            if (marker.label == null || distanceTenths != marker.distanceTenths) {
+                marker.distanceTenths = distanceTenths;
+                marker.label = getContext().getResources().getString(R.string.place_text_format,
+                        place.getName(), distanceFormat.format(distanceTenths / 10.0));
+                benefitPaint.getTextBounds(marker.label, 0, marker.label.length(), textBounds);
+                marker.textWidth = textBounds.width();
+                marker.textHeight = textBounds.height();
             }
-        });
+        }
+
+        // Being sorted by bearing lets each frame find the visible markers with a binary search,
+        // and is the order the label layout needs.
+        labelLayout.layout(markers, pixelsPerDegree, getHeight());
+
+        maxLabelDegrees = 0;
+        for (int i = 0; i < markers.size(); i++) {
+            PlaceMarker marker = markers.get(i);
+            maxLabelDegrees = Math.max(maxLabelDegrees, marker.endDegrees - marker.bearing);
+        }
+
+        markersSource = nearby;
+        markersWidth = getWidth();
+        markersHeight = getHeight();
     }
 
     /**
-     * Animates the view to the specified heading, or simply redraws it immediately if the
-     * difference between the current heading and new heading are small enough that it wouldn't be
-     * noticeable.
-     *
-     * @param end the desired heading
+     * Updates the markers to match the places in the specified index, in the same order, reusing
+     * the markers of the places that were already displayed and recycling those of the places
+     * that are gone.
      */
-    private void animateTo(float end) {
-        // Only act if the animator is not currently running. If the user's orientation changes
-        // while the animator is running, we wait until the end of the animation to update the
-        // display again, to prevent jerkiness.
-        if (!valueAnimator.isRunning()) {
-            float start = animatedHeading;
-            float distance = Math.abs(end - start);
-            float reverseDistance = 360.0f - distance;
-            float shortest = Math.min(distance, reverseDistance);
-
-            if (Float.isNaN(animatedHeading) || shortest < MIN_DISTANCE_TO_ANIMATE) {
-                // If the distance to the destination angle is small enough (or if this is the
-                // first time the compass is being displayed), it will be more fluid to just redraw
-                // immediately instead of doing an animation.
-                animatedHeading = end;
-                invalidate();
-            } else {
-                // For larger distances (i.e., if the compass "jumps" because of sensor calibration
-                // issues), we animate the effect to provide a more fluid user experience. The
-                // calculation below finds the shortest distance between the two angles, which may
-                // involve crossing 0/360 degrees.
-                float goal;
-
-                if (distance < reverseDistance) {
-                    goal = end;
-                } else if (end < start) {
-                    goal = end + 360.0f;
-                } else {
-                    goal = end - 360.0f;
-                }
-
-                valueAnimator.setFloatValues(start, goal);
-                valueAnimator.start();
+    private void matchMarkers(BearingIndex bearings) {
+        markersGeneration++;
+
+        nextMarkers.clear();
+        for (int i = 0; i < bearings.size(); i++) {
+            Place place = bearings.getPlace(i);
+            PlaceMarker marker = markersByPlace.get(place);
+            if (marker == null) {
+                marker = markerPool.isEmpty() ? new PlaceMarker()
+                        : markerPool.remove(markerPool.size() - 1);
+                marker.setPlace(place);
+                markersByPlace.put(place, marker);
             }
+            marker.generation = markersGeneration;
+            nextMarkers.add(marker);
+        }
+
+        for (int i = 0; i < markers.size(); i++) {
+            PlaceMarker marker = markers.get(i);
+            if (marker.generation != markersGeneration) {
+                markersByPlace.remove(marker.place);
+                marker.setPlace(null);
+                markerPool.add(marker);
+            }
+        }
+
+        List<PlaceMarker> previous = markers;
+        markers = nextMarkers;
+        nextMarkers = previous;
+        nextMarkers.clear();
+    }
+
+    /**
+     * Invalidates the view and notifies the redraw listener, if any.
+     */
+    private void requestRedraw() {
+        invalidate();
+        if (redrawListener != null) {
+            redrawListener.onRedrawNeeded(this);
         }
     }
 }
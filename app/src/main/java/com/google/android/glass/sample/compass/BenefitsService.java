@@ -2,6 +2,7 @@ package com.google.android.glass.sample.compass;
 
 import com.google.android.glass.sample.compass.model.Landmarks;
 import com.google.android.glass.sample.compass.model.Place;
+import com.google.android.glass.sample.compass.util.Logging;
 import com.google.android.glass.sample.compass.util.MathUtils;
 import com.google.android.glass.timeline.LiveCard;
 import com.google.android.glass.timeline.LiveCard.PublishMode;
@@ -19,6 +20,9 @@ import android.os.IBinder;
 import android.speech.tts.TextToSpeech;
 import android.util.Log;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
 public class BenefitsService extends Service {
 
     private static final String TAG = BenefitsService.class.getSimpleName();
@@ -35,6 +39,7 @@ public class BenefitsService extends Service {
     @Override
     public void onCreate() {
         super.onCreate();
+        Logging.setLogger(new AndroidLogger());
 
         speech = new TextToSpeech(this, new TextToSpeech.OnInitListener() {
             @Override
@@ -48,8 +53,13 @@ public class BenefitsService extends Service {
         LocationManager locationManager =
                 (LocationManager) getSystemService(Context.LOCATION_SERVICE);
 
-        orientationManager = new OrientationManager(sensorManager, locationManager);
-        landmarks = new Landmarks(this);
+        // The sensors are processed on their own thread so that the compass stays smooth while
+        // the main thread is busy with the menu or text to speech.
+        orientationManager = new OrientationManager(sensorManager, locationManager,
+                true /* useSensorThread */);
+        orientationManager.setSensorBatchingEnabled(true);
+        landmarks = new Landmarks();
+        LandmarkLoader.loadInBackground(this, landmarks);
     }
 
     @Override
@@ -94,10 +104,24 @@ public class BenefitsService extends Service {
         super.onDestroy();
     }
 
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        BenefitsCompassRenderer renderer = benefitsCompassRenderer;
+        if (renderer != null) {
+            writer.println("Renderer:");
+            renderer.dump("  ", writer);
+        } else {
+            writer.println("Renderer: not created");
+        }
+    }
+
     public class BenefitsBinder extends Binder {
 
         public void readBenefitDescription() {
             Place benefit = benefitsCompassRenderer.getFrontBenefit();
+            if (benefit == null) {
+                return;
+            }
 
             String text = benefit.getDescription() + " in " + benefit.getName();
             speech.speak(text, TextToSpeech.QUEUE_FLUSH, null);
@@ -105,6 +129,9 @@ public class BenefitsService extends Service {
 
         public void getDirections() {
             Place benefit = benefitsCompassRenderer.getFrontBenefit();
+            if (benefit == null) {
+                return;
+            }
             String uri = "google.navigation:ll=%s,%s&mode=w&title=%s";
 
             Intent mapIntent = new Intent(Intent.ACTION_VIEW);
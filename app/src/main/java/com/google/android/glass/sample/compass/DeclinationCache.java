@@ -0,0 +1,94 @@
+package com.google.android.glass.sample.compass;
+
+import android.hardware.GeomagneticField;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the magnetic declination for coarse cells of latitude, longitude, altitude and time, so
+ * that the geomagnetic model is only evaluated when the user moves into a new cell rather than on
+ * every location fix.
+ * <p>
+ * Cells are {@value #CELL_SIZE_DEGREES} degrees (about 11 km) on a side,
+ * {@value #ALTITUDE_BAND_METERS} meters high and 30 days long. The declination is evaluated at
+ * the center of each cell; across a cell of this size it changes by well under a degree except
+ * very close to the magnetic poles, which is within the accuracy of the magnetometer. The most
+ * recently used cells are kept, so walking back and forth across a cell boundary does not
+ * evaluate the model again.
+ */
+class DeclinationCache {
+
+    private static final double CELL_SIZE_DEGREES = 0.1;
+    private static final int ALTITUDE_BAND_METERS = 1000;
+    private static final long PERIOD_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    /** Altitudes are clamped to the bands from below sea level up to 62 km. */
+    private static final int MAX_ALTITUDE_BAND = 63;
+
+    private static final int MAX_ENTRIES = 16;
+
+    private final Map<Long, Float> declinations =
+            new LinkedHashMap<Long, Float>(MAX_ENTRIES, 0.75f, true /* accessOrder */) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Float> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Returns the magnetic declination at the specified location and time, in degrees.
+     *
+     * @param latitude the latitude, in degrees
+     * @param longitude the longitude, in degrees
+     * @param altitude the altitude above sea level, in meters
+     * @param timeMillis the time, in milliseconds since the epoch
+     */
+    synchronized float getDeclination(double latitude, double longitude, double altitude,
+            long timeMillis) {
+        int latitudeCell = (int) Math.min(Math.floor((latitude + 90) / CELL_SIZE_DEGREES),
+                Math.round(180 / CELL_SIZE_DEGREES) - 1);
+        double wrappedLongitude = ((longitude + 180) % 360 + 360) % 360;
+        int longitudeCell = (int) Math.min(Math.floor(wrappedLongitude / CELL_SIZE_DEGREES),
+                Math.round(360 / CELL_SIZE_DEGREES) - 1);
+        int altitudeBand = (int) Math.max(0, Math.min(MAX_ALTITUDE_BAND,
+                Math.floor(altitude / ALTITUDE_BAND_METERS) + 1));
+        long period = timeMillis / PERIOD_MILLIS;
+
+        long key = (period << 29) | ((long) altitudeBand << 23) | ((long) latitudeCell << 12)
+                | longitudeCell;
+        Float declination = declinations.get(key);
+        if (declination != null) {
+            hits++;
+            return declination;
+        }
+
+        misses++;
+        GeomagneticField field = new GeomagneticField(
+                (float) ((latitudeCell + 0.5) * CELL_SIZE_DEGREES - 90),
+                (float) ((longitudeCell + 0.5) * CELL_SIZE_DEGREES - 180),
+                (altitudeBand - 0.5f) * ALTITUDE_BAND_METERS,
+                period * PERIOD_MILLIS + PERIOD_MILLIS / 2);
+        declination = field.getDeclination();
+        declinations.put(key, declination);
+        return declination;
+    }
+
+    /**
+     * Returns the number of times the declination was found in the cache.
+     */
+    synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of times the geomagnetic model had to be evaluated.
+     */
+    synchronized long getMissCount() {
+        return misses;
+    }
+}
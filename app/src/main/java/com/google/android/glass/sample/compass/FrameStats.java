@@ -0,0 +1,166 @@
+package com.google.android.glass.sample.compass;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each frame drawn by {@link BenefitsCompassRenderer} takes, split into the
+ * stages of drawing to a surface: waiting for {@code lockCanvas}, drawing the views, and
+ * {@code unlockCanvasAndPost}.
+ * <p>
+ * Frames are recorded on the render thread and the statistics can be read from any thread, for
+ * example to print them from {@code dumpsys}. Recording a frame allocates nothing and takes a
+ * few array updates, so it is always on.
+ */
+class FrameStats {
+
+    /** The stages of a frame, in the order they happen. */
+    private static final String[] STAGE_NAMES = {"lock", "draw", "post", "total"};
+    private static final int LOCK = 0;
+    private static final int DRAW = 1;
+    private static final int POST = 2;
+    private static final int TOTAL = 3;
+
+    /** The percentiles printed for each stage. */
+    private static final int[] PERCENTILES = {50, 90, 95, 99};
+
+    private final long budgetNanos;
+    private final Histogram[] histograms = new Histogram[STAGE_NAMES.length];
+
+    private long frames;
+    private long lateFrames;
+    private long droppedFrames;
+
+    /**
+     * Creates an empty set of statistics.
+     *
+     * @param budgetNanos the time available for each frame at the target frame rate
+     */
+    FrameStats(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Records the times taken by the stages of a frame, in nanoseconds.
+     */
+    synchronized void recordFrame(long lockNanos, long drawNanos, long postNanos) {
+        long totalNanos = lockNanos + drawNanos + postNanos;
+        histograms[LOCK].record(lockNanos);
+        histograms[DRAW].record(drawNanos);
+        histograms[POST].record(postNanos);
+        histograms[TOTAL].record(totalNanos);
+
+        frames++;
+        if (totalNanos > budgetNanos) {
+            // A frame that overruns its budget is late, and every whole interval it overran by is
+            // a frame that could have been drawn but was not.
+            lateFrames++;
+            droppedFrames += (totalNanos - 1) / budgetNanos;
+        }
+    }
+
+    /**
+     * Returns a one-line summary of the statistics, suitable for the log.
+     */
+    synchronized String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(frames).append(" frames, ")
+                .append(lateFrames).append(" late, ")
+                .append(droppedFrames).append(" dropped");
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            Histogram histogram = histograms[i];
+            summary.append("; ").append(STAGE_NAMES[i])
+                    .append(" p50=").append(formatMillis(histogram.getPercentile(50)))
+                    .append(" p99=").append(formatMillis(histogram.getPercentile(99)))
+                    .append(" max=").append(formatMillis(histogram.getMax()));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Prints the statistics in full, in the format of {@code dumpsys}.
+     */
+    synchronized void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.print("Frames: ");
+        writer.print(frames);
+        writer.print(" (late: ");
+        writer.print(lateFrames);
+        writer.print(", dropped: ");
+        writer.print(droppedFrames);
+        writer.print(", budget: ");
+        writer.print(formatMillis(budgetNanos));
+        writer.println(")");
+
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            Histogram histogram = histograms[i];
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(STAGE_NAMES[i]);
+            writer.print(":");
+            for (int percentile : PERCENTILES) {
+                writer.print(" p");
+                writer.print(percentile);
+                writer.print("=");
+                writer.print(formatMillis(histogram.getPercentile(percentile)));
+            }
+            writer.print(" max=");
+            writer.println(formatMillis(histogram.getMax()));
+        }
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.US, "%.2fms",
+                nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /**
+     * Counts durations in buckets of {@link #BUCKET_NANOS}, which is fine enough to compare
+     * against a frame budget of about 22 ms. Longer durations than the last bucket are counted
+     * in it, but still reported exactly by {@link #getMax()}.
+     */
+    private static class Histogram {
+
+        private static final long BUCKET_NANOS = TimeUnit.MICROSECONDS.toNanos(250);
+        private static final int BUCKET_COUNT = 400;
+
+        private final long[] counts = new long[BUCKET_COUNT];
+        private long total;
+        private long max;
+
+        void record(long nanos) {
+            int bucket = (int) Math.min(Math.max(nanos, 0) / BUCKET_NANOS, BUCKET_COUNT - 1);
+            counts[bucket]++;
+            total++;
+            max = Math.max(max, nanos);
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the duration that the specified percentage of the recorded durations do not
+         * exceed, rounded up to the end of its bucket.
+         */
+        long getPercentile(int percentile) {
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = (total * percentile + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min((i + 1) * BUCKET_NANOS, max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.google.android.glass.sample.compass;
+
+import com.google.android.glass.sample.compass.model.BearingIndex;
+import com.google.android.glass.sample.compass.model.Place;
+import com.google.android.glass.sample.compass.util.MathUtils;
+
+/**
+ * Keeps track of the place in front of the user, the one whose bearing is closest to the heading,
+ * without letting the selection flicker between two places with similar bearings.
+ * <p>
+ * Another place only takes over once it is at least {@link #HYSTERESIS_DEGREES} closer to the
+ * heading than the current one, or when the current one is no longer nearby. While the head is
+ * still, the small jitter left in the heading therefore never changes the selection. For places
+ * closer together than twice that, the margin is half the angle between them, so that turning
+ * past a place always selects it.
+ * <p>
+ * This class is not thread-safe; it is only used on the thread that draws the compass.
+ */
+class FrontBenefitTracker {
+
+    /** How much closer to the heading another place has to be to take over, in degrees. */
+    static final float HYSTERESIS_DEGREES = 5.0f;
+
+    private BearingIndex bearings;
+    private Place current;
+
+    /** The bearing to the current place in {@link #bearings}, or NaN if it is not in there. */
+    private float currentBearing = Float.NaN;
+
+    /**
+     * Updates the selection for the specified bearings and heading.
+     *
+     * @param bearings the bearings to the nearby places
+     * @param heading the heading, in degrees
+     * @return the place in front of the user, or the previous one if there are no nearby places
+     */
+    Place update(BearingIndex bearings, float heading) {
+        if (bearings != this.bearings) {
+            // The bearings only change when the user moves, so the lookup is rare.
+            this.bearings = bearings;
+            currentBearing = (current != null) ? bearings.findBearing(current) : Float.NaN;
+        }
+
+        int closest = bearings.findClosest(heading);
+        if (closest < 0 || bearings.getPlace(closest).equals(current)) {
+            return current;
+        }
+
+        float closestBearing = bearings.getBearing(closest);
+        if (Float.isNaN(currentBearing)) {
+            current = bearings.getPlace(closest);
+            currentBearing = closestBearing;
+            return current;
+        }
+
+        double margin = Math.min(HYSTERESIS_DEGREES,
+                MathUtils.getAngleDifference(currentBearing, closestBearing) / 2);
+        if (MathUtils.getAngleDifference(closestBearing, heading) + margin
+                < MathUtils.getAngleDifference(currentBearing, heading)) {
+            current = bearings.getPlace(closest);
+            currentBearing = closestBearing;
+        }
+        return current;
+    }
+}
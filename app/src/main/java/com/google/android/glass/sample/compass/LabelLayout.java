@@ -0,0 +1,84 @@
+package com.google.android.glass.sample.compass;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides where the labels of the nearby places are drawn on the compass.
+ * <p>
+ * Each label starts just above its pin and moves up one row at a time until it no longer
+ * overlaps a label that has already been placed; if it would have to move up past
+ * {@link BenefitsCompassView#MAX_OVERLAPPING_PLACE_NAMES} rows it is hidden. Labels are
+ * processed in order of their left edge (which is the order of their bearings), so only the
+ * labels that are still "open" at that edge can overlap the next one, and those are kept in a
+ * small active list. The layout is computed in degrees relative to north, so it does not depend
+ * on the heading and only has to be recomputed when the user moves, the nearby set changes or
+ * the view is resized.
+ */
+class LabelLayout {
+
+    private final List<PlaceMarker> active = new ArrayList<PlaceMarker>();
+
+    /**
+     * Computes the label positions of the specified markers, whose bearings, text sizes and
+     * distances must already be up to date.
+     *
+     * @param markers the markers to lay out, sorted by bearing
+     * @param pixelsPerDegree the size, in pixels, of one degree step
+     * @param viewHeight the height of the view, in pixels
+     */
+    void layout(List<PlaceMarker> markers, float pixelsPerDegree, int viewHeight) {
+        for (int i = 0; i < markers.size(); i++) {
+            PlaceMarker marker = markers.get(i);
+
+            // The label bounds include the pin icon on the left and a small margin on both sides
+            // of the text.
+            marker.startDegrees = marker.bearing
+                    - (BenefitsCompassView.PLACE_PIN_WIDTH / 2) / pixelsPerDegree;
+            marker.endDegrees = marker.bearing + (BenefitsCompassView.PLACE_PIN_WIDTH / 2
+                    + 2 * BenefitsCompassView.PLACE_TEXT_MARGIN + marker.textWidth)
+                    / pixelsPerDegree;
+        }
+
+        int rowHeight = (int) (BenefitsCompassView.PLACE_TEXT_HEIGHT
+                + BenefitsCompassView.PLACE_TEXT_LEADING);
+
+        active.clear();
+        for (int i = 0; i < markers.size(); i++) {
+            PlaceMarker marker = markers.get(i);
+
+            // Labels that end before this one starts cannot overlap it, nor any later label.
+            for (int j = active.size() - 1; j >= 0; j--) {
+                if (active.get(j).endDegrees <= marker.startDegrees) {
+                    active.remove(j);
+                }
+            }
+
+            // Start at the bottom row, which is lower for places that are further away, and
+            // move up until the label does not overlap any open label.
+            int top = viewHeight / 2 - (int) BenefitsCompassView.PLACE_TEXT_HEIGHT
+                    + (int) (marker.distanceKm * 5.0);
+            marker.labelVisible = false;
+            for (int row = 1; row <= BenefitsCompassView.MAX_OVERLAPPING_PLACE_NAMES; row++) {
+                marker.labelTop = top - row * rowHeight;
+                marker.labelBottom = marker.labelTop + marker.textHeight;
+
+                if (!overlapsActive(marker)) {
+                    marker.labelVisible = true;
+                    active.add(marker);
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean overlapsActive(PlaceMarker marker) {
+        for (int i = 0; i < active.size(); i++) {
+            PlaceMarker other = active.get(i);
+            if (other.labelTop < marker.labelBottom && marker.labelTop < other.labelBottom) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
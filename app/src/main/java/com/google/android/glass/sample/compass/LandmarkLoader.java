@@ -0,0 +1,225 @@
+package com.google.android.glass.sample.compass;
+
+import com.google.android.glass.sample.compass.model.CachedLandmarkSource;
+import com.google.android.glass.sample.compass.model.LandmarkFile;
+import com.google.android.glass.sample.compass.model.LandmarkSource;
+import com.google.android.glass.sample.compass.model.Landmarks;
+import com.google.android.glass.sample.compass.model.Place;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Process;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the hard-coded landmarks (located in {@code res/raw/landmarks.json}) into a
+ * {@link Landmarks} object on a background thread.
+ * <p>
+ * The first time the landmarks are loaded (and whenever the application is updated), the JSON
+ * resource is converted to a {@link LandmarkFile} in the application's private storage. Later
+ * starts simply memory-map that file, which takes constant time regardless of the number of
+ * landmarks.
+ */
+class LandmarkLoader {
+
+    private static final String TAG = LandmarkLoader.class.getSimpleName();
+
+    /**
+     * The name of the converted landmark file in the application's private storage.
+     */
+    private static final String LANDMARK_FILE_NAME = "landmarks.bin";
+
+    private LandmarkLoader() {
+    }
+
+    /**
+     * Starts loading the landmarks from the resource bundle into the specified object in the
+     * background.
+     */
+    static void loadInBackground(Context context, final Landmarks landmarks) {
+        // This is called on the service's main thread, so the landmark data (which may be large)
+        // is read on a background thread to avoid blocking it.
+        final Context applicationContext = context.getApplicationContext();
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                landmarks.load(createSource(applicationContext));
+            }
+        }, TAG);
+        loader.start();
+    }
+
+    /**
+     * Returns a source that converts {@code res/raw/landmarks.json} to a landmark file in the
+     * application's private storage if it does not exist or was generated from an older version
+     * of the application.
+     */
+    private static LandmarkSource createSource(final Context context) {
+        return new CachedLandmarkSource(new File(context.getFilesDir(), LANDMARK_FILE_NAME),
+                getSourceStamp(context), new CachedLandmarkSource.PlaceReader() {
+            @Override
+            public List<Place> readPlaces() throws IOException {
+                return readLandmarksResource(context);
+            }
+        });
+    }
+
+    /**
+     * Returns a value that changes whenever the application, and therefore the landmarks
+     * resource, is updated.
+     */
+    private static long getSourceStamp(Context context) {
+        try {
+            return context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.e(TAG, "Could not find own package", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the places from {@code res/raw/landmarks.json}. The file is parsed as a stream of
+     * tokens, so neither its text nor a tree of JSON objects is ever held in memory. A place
+     * with a missing or invalid property is skipped.
+     *
+     * @throws IOException if the file cannot be read or is malformed, so that an incomplete list
+     *     of places is never converted and cached
+     */
+    private static List<Place> readLandmarksResource(Context context) throws IOException {
+        List<Place> places = new ArrayList<Place>();
+        InputStream is = context.getResources().openRawResource(R.raw.landmarks);
+
+        try {
+            JsonReader reader = new JsonReader(
+                    new BufferedReader(new InputStreamReader(is, "UTF-8")));
+            readPlaceList(reader, places);
+        } catch (IllegalStateException e) {
+            // JsonReader reports unexpected tokens with IllegalStateException.
+            throw new IOException("Malformed landmarks resource after " + places.size()
+                    + " places", e);
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Could not close landmarks resource stream", e);
+            }
+        }
+
+        return places;
+    }
+
+    /**
+     * Reads places from a JSON document. The document should contain a root object with a
+     * "landmarks" property that is an array of objects that represent places. A place has four
+     * properties: name, description, latitude, and longitude.
+     */
+    private static void readPlaceList(JsonReader reader, List<Place> places)
+            throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("landmarks".equals(reader.nextName())
+                    && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Place place = readPlace(reader);
+                    if (place != null) {
+                        places.add(place);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads a JSON object that represents a place and converts it into a {@link Place} object.
+     * Returns null if the value is not a valid place.
+     */
+    private static Place readPlace(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        String name = "";
+        String description = "";
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String property = reader.nextName();
+            if ("name".equals(property)) {
+                name = readString(reader);
+            } else if ("description".equals(property)) {
+                description = readString(reader);
+            } else if ("latitude".equals(property)) {
+                latitude = readCoordinate(reader, 90.0);
+            } else if ("longitude".equals(property)) {
+                longitude = readCoordinate(reader, 180.0);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!name.isEmpty() && !Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+            return new Place(latitude, longitude, name, description);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a string value, or returns an empty string if the next value is not a string.
+     */
+    private static String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        } else {
+            reader.skipValue();
+            return "";
+        }
+    }
+
+    /**
+     * Reads a coordinate in degrees, or returns {@code NaN} if the next value is not a number or
+     * lies outside of [-limit, limit]. {@code Double.parseDouble} also accepts "NaN" and
+     * "Infinity", which are rejected the same way. The value is consumed either way, so that the
+     * rest of the document can still be read.
+     */
+    private static double readCoordinate(JsonReader reader, double limit) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            // JsonReader.nextDouble() leaves a value it cannot parse unconsumed, after which the
+            // next call to nextName() fails, so the value is read as a string and parsed here.
+            String value = reader.nextString();
+            double degrees;
+            try {
+                degrees = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+            return (degrees >= -limit && degrees <= limit) ? degrees : Double.NaN;
+        } else {
+            reader.skipValue();
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.google.android.glass.sample.compass;
+
+import com.google.android.glass.sample.compass.model.Landmarks;
+import com.google.android.glass.sample.compass.model.NearbySet;
+import com.google.android.glass.sample.compass.model.Place;
+import com.google.android.glass.sample.compass.model.SectorSelection;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the set of places near the user up to date on a background thread, so that querying a
+ * large landmark catalogue never holds up the main thread, where the sensor and location
+ * notifications are handled.
+ * <p>
+ * Only the latest location that the worker has not started on yet is kept: a burst of fixes that
+ * arrive while the worker is busy is computed once, for the last of them. A result that is
+ * overtaken by a newer location while it is being computed is not published, since another one
+ * follows right behind it. Each result is published as an immutable list, which is only copied
+ * when the set has changed.
+ * <p>
+ * In a dense area the compass could not show the labels of all the places in the set anyway, so
+ * only the nearest {@link #PLACES_PER_SECTOR} of them in each quarter of the horizon are
+ * published, as picked by a {@link SectorSelection}. They are picked from the set itself, so
+ * they keep its hysteresis at the edge of the radius, and the selection only changes when a
+ * place is clearly nearer than one already shown.
+ * <p>
+ * {@link #start()}, {@link #stop()}, {@link #update(Location)} and {@link #invalidate()} must be
+ * called on the main thread. The {@link NearbySet} is only touched on the worker thread, while
+ * holding its lock.
+ */
+class NearbyPlacesWorker {
+
+    private static final String TAG = NearbyPlacesWorker.class.getSimpleName();
+
+    /**
+     * The number of sectors of bearings that the published places are spread over. The compass
+     * view shows about a quarter of the horizon at a time.
+     */
+    private static final int SECTOR_COUNT = 4;
+
+    /**
+     * The most places published in each sector. With at most
+     * {@link BenefitsCompassView#MAX_OVERLAPPING_PLACE_NAMES} labels on top of each other, this
+     * leaves room for two columns of labels in every direction.
+     */
+    private static final int PLACES_PER_SECTOR =
+            2 * BenefitsCompassView.MAX_OVERLAPPING_PLACE_NAMES;
+
+    /**
+     * Receives the places near the user.
+     */
+    interface OnNearbyPlacesListener {
+
+        /**
+         * Called on the worker thread when the places near the user have been computed for a new
+         * location.
+         *
+         * @param location the location that the places were computed for
+         * @param places the places near the user, which must not be modified
+         */
+        void onNearbyPlaces(Location location, List<Place> places);
+    }
+
+    private final NearbySet nearbySet;
+    private final SectorSelection selection =
+            new SectorSelection(SECTOR_COUNT, PLACES_PER_SECTOR);
+    private final OnNearbyPlacesListener listener;
+
+    /** The location waiting to be computed, or null if the worker has caught up. */
+    private final AtomicReference<Location> pendingLocation = new AtomicReference<Location>();
+
+    /** The number of locations that were skipped or whose results were not published. */
+    private final AtomicLong staleUpdates = new AtomicLong();
+
+    private HandlerThread thread;
+    private Handler handler;
+
+    /** Whether the landmarks changed while the worker was stopped. */
+    private boolean invalidated;
+
+    /**
+     * The last location computed, and the last list of places published. These and
+     * {@link #selection} are only accessed on the worker thread, while holding the lock of
+     * {@link #nearbySet}.
+     */
+    private Location lastLocation;
+    private List<Place> places = Collections.emptyList();
+    private boolean unpublishedChanges = true;
+
+    private final Runnable updater = new Runnable() {
+        @Override
+        public void run() {
+            // A worker thread that was stopped may still be finishing its last computation when
+            // the next one starts, so the two are kept from overlapping.
+            synchronized (nearbySet) {
+                Location location = pendingLocation.getAndSet(null);
+                if (location != null) {
+                    computeNearbyPlaces(location);
+                }
+            }
+        }
+    };
+
+    private final Runnable invalidator = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (nearbySet) {
+                nearbySet.invalidate();
+                // If a location is already pending, the invalidated set is computed for it anyway.
+                if (lastLocation != null && pendingLocation.compareAndSet(null, lastLocation)) {
+                    updater.run();
+                }
+            }
+        }
+    };
+
+    NearbyPlacesWorker(Landmarks landmarks, OnNearbyPlacesListener listener) {
+        this.nearbySet = new NearbySet(landmarks);
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the worker thread.
+     */
+    void start() {
+        if (thread == null) {
+            thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+
+            if (invalidated) {
+                invalidated = false;
+                handler.post(invalidator);
+            }
+            if (pendingLocation.get() != null) {
+                handler.post(updater);
+            }
+        }
+    }
+
+    /**
+     * Stops the worker thread. A location that has not been computed yet is dropped, and a
+     * computation in progress is finished but may still be published.
+     */
+    void stop() {
+        if (thread != null) {
+            thread.quit();
+            thread = null;
+            handler = null;
+            if (pendingLocation.getAndSet(null) != null) {
+                staleUpdates.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Schedules the places near the specified location to be computed, replacing any location
+     * that the worker has not started on yet.
+     */
+    void update(Location location) {
+        Location replaced = pendingLocation.getAndSet(location);
+        if (replaced != null) {
+            staleUpdates.incrementAndGet();
+        } else if (handler != null) {
+            handler.post(updater);
+        }
+    }
+
+    /**
+     * Computes the places near the last location again, for when the landmarks have changed.
+     */
+    void invalidate() {
+        if (handler != null) {
+            handler.post(invalidator);
+        } else {
+            invalidated = true;
+        }
+    }
+
+    /**
+     * Returns the number of locations that were skipped because a newer one arrived before or
+     * while they were being computed.
+     */
+    long getStaleUpdateCount() {
+        return staleUpdates.get();
+    }
+
+    private void computeNearbyPlaces(Location location) {
+        NearbySet.Delta delta = nearbySet.update(location.getLatitude(), location.getLongitude());
+        lastLocation = location;
+        if (!delta.isEmpty()) {
+            unpublishedChanges = true;
+        }
+
+        if (pendingLocation.get() != null) {
+            // A newer location arrived in the meantime; the changes are published with it.
+            staleUpdates.incrementAndGet();
+            return;
+        }
+
+        // The places are handed to the listener with every location, since their bearings
+        // change as the user moves, but the list is only rebuilt when the places in it change.
+        if (nearbySet.getPlaces().size() > selection.getCapacity()) {
+            if (selection.update(location.getLatitude(), location.getLongitude(),
+                    nearbySet.getPlaces())) {
+                places = selection.getSelection();
+            }
+            // The full set has to be copied again once it is small enough.
+            unpublishedChanges = true;
+        } else if (unpublishedChanges) {
+            places = Collections.unmodifiableList(new ArrayList<Place>(nearbySet.getPlaces()));
+            selection.clear();
+            unpublishedChanges = false;
+        }
+        listener.onNearbyPlaces(location, places);
+    }
+}
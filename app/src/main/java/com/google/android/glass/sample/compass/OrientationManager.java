@@ -1,36 +1,47 @@
 package com.google.android.glass.sample.compass;
 
+import com.google.android.glass.sample.compass.util.HeadingFilter;
 import com.google.android.glass.sample.compass.util.MathUtils;
 
-import android.hardware.GeomagneticField;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
-import android.location.Criteria;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
 
-import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Collects and communicates information about the user's current orientation and location.
+ * <p>
+ * The current values are published as an immutable {@link OrientationState} through a single
+ * atomic reference, so the render thread can read a consistent snapshot without locking and the
+ * sensor callbacks never wait for a frame to be drawn. Only the thread that receives the sensor
+ * and location callbacks replaces the snapshot.
+ * <p>
+ * Optionally, the sensor and location callbacks (including the rotation math) run on a dedicated
+ * sensor thread rather than on the main thread. The {@link BenefitsCompassListener} is still
+ * notified on the main thread; orientation changes that arrive while a notification is pending
+ * are folded into it, since the listener reads the latest snapshot anyway.
+ * <p>
+ * The sensor and location sampling rates adapt to how the user moves, as decided by a
+ * {@link SamplingPolicy}.
  */
 public class OrientationManager {
 
-    /**
-     * The minimum distance desired between location notifications.
-     */
-    private static final long METERS_BETWEEN_LOCATIONS = 2;
-
-    /**
-     * The minimum elapsed time desired between location notifications.
-     */
-    private static final long MILLIS_BETWEEN_LOCATIONS = TimeUnit.SECONDS.toMillis(3);
+    private static final String TAG = OrientationManager.class.getSimpleName();
 
     /**
      * The maximum age of a location retrieved from the passive location provider before it is
@@ -46,18 +57,99 @@ public class OrientationManager {
      */
     private static final int ARM_DISPLACEMENT_DEGREES = 6;
 
+    /**
+     * While the head is still, rotation vector events may be held in the sensor hardware's FIFO
+     * for this long, so that the app is woken up once for a few of them. A turn is only noticed
+     * once its first events leave the FIFO, up to this long plus one still-rate sampling period
+     * after it starts, so this is kept short enough for the switch to the turning rate to stay
+     * under half a second.
+     */
+    private static final int STILL_MAX_REPORT_LATENCY_MICROS =
+            (int) TimeUnit.MILLISECONDS.toMicros(250);
+
+    /** The magnetic field sensor is only used for accuracy changes, which can wait longer. */
+    private static final int MAGNETIC_MAX_REPORT_LATENCY_MICROS =
+            (int) TimeUnit.SECONDS.toMicros(5);
+
+    /** The most events of a batch that are kept for the heading filter. */
+    private static final int MAX_QUEUED_EVENTS = 32;
+
     private final SensorManager sensorManager;
     private final LocationManager locationManager;
+    private final boolean useSensorThread;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private final float[] rotationMatrix;
     private final float[] orientation;
+    private final HeadingFilter headingFilter = new HeadingFilter();
+    private final SamplingPolicy samplingPolicy = new SamplingPolicy();
+
+    private final AtomicReference<OrientationState> state =
+            new AtomicReference<OrientationState>(OrientationState.INITIAL);
 
     private boolean tracking;
-    private float heading;
-    private float pitch;
-    private Location location;
     private BenefitsCompassListener listener;
-    private GeomagneticField geomagneticField;
-    private boolean hasInterference;
+    private HandlerThread sensorThread;
+    private volatile Handler sensorHandler;
+    private Sensor rotationSensor;
+
+    private final DeclinationCache declinationCache = new DeclinationCache();
+
+    /**
+     * The magnetic declination at the user's location, or NaN if the location is not known.
+     * Written on the main thread when tracking starts and then on the sensor thread.
+     */
+    private volatile float declination = Float.NaN;
+
+    /** The pitch computed from the last rotation vector event, in degrees. */
+    private float pitch;
+
+    /**
+     * Whether the rotation vector events are currently batched by the sensor hardware, and the
+     * events of the current burst that have not been processed yet. The queue only keeps the
+     * latest {@link #MAX_QUEUED_EVENTS} events, which is all the heading filter needs.
+     */
+    private volatile boolean batching;
+    private boolean batchingEnabled;
+    private final float[][] queuedValues = new float[MAX_QUEUED_EVENTS][];
+    private final long[] queuedTimestamps = new long[MAX_QUEUED_EVENTS];
+    private int queueStart;
+    private int queueSize;
+    private boolean batchPending;
+
+    /** The rotation vector events received, and the number of times they woke the app up. */
+    private final AtomicLong sensorEvents = new AtomicLong();
+    private final AtomicLong sensorWakeups = new AtomicLong();
+
+    /** True while a posted orientation notification has not run yet. */
+    private final AtomicBoolean orientationChangePending = new AtomicBoolean();
+
+    private final Runnable orientationChangedNotifier = new Runnable() {
+        @Override
+        public void run() {
+            orientationChangePending.set(false);
+            if (tracking) {
+                listener.onOrientationChanged(OrientationManager.this);
+            }
+        }
+    };
+
+    private final Runnable locationChangedNotifier = new Runnable() {
+        @Override
+        public void run() {
+            if (tracking) {
+                listener.onLocationChanged(OrientationManager.this);
+            }
+        }
+    };
+
+    private final Runnable accuracyChangedNotifier = new Runnable() {
+        @Override
+        public void run() {
+            if (tracking) {
+                listener.onAccuracyChanged(OrientationManager.this);
+            }
+        }
+    };
 
     /**
      * The sensor listener used by the orientation manager.
@@ -67,45 +159,61 @@ public class OrientationManager {
         @Override
         public void onAccuracyChanged(Sensor sensor, int accuracy) {
             if (sensor.getType() == Sensor.TYPE_MAGNETIC_FIELD) {
-                hasInterference = (accuracy < SensorManager.SENSOR_STATUS_ACCURACY_LOW);
-                listener.onAccuracyChanged(OrientationManager.this);
+                boolean hasInterference =
+                        (accuracy < SensorManager.SENSOR_STATUS_ACCURACY_LOW);
+                state.set(state.get().withInterference(hasInterference));
+                notifyListener(accuracyChangedNotifier);
             }
         }
 
         @Override
         public void onSensorChanged(SensorEvent event) {
             if (event.sensor.getType() == Sensor.TYPE_ROTATION_VECTOR) {
-                // Get the current heading from the sensor, then notify the listeners of the
-                // change.
-                SensorManager.getRotationMatrixFromVector(rotationMatrix, event.values);
-                SensorManager.remapCoordinateSystem(rotationMatrix, SensorManager.AXIS_X,
-                        SensorManager.AXIS_Z, rotationMatrix);
-                SensorManager.getOrientation(rotationMatrix, orientation);
-
-                // Store the pitch (used to display a message indicating that the user's head
-                // angle is too steep to produce reliable results.
-                pitch = (float) Math.toDegrees(orientation[1]);
-
-                // Convert the heading (which is relative to magnetic north) to one that is
-                // relative to true north, using the user's current location to compute this.
-                float magneticHeading = (float) Math.toDegrees(orientation[0]);
-                heading = MathUtils.mod(computeTrueNorth(magneticHeading), 360.0f)
-                        - ARM_DISPLACEMENT_DEGREES;
-
-                listener.onOrientationChanged(OrientationManager.this);
+                if (batching) {
+                    // Events may still arrive after stop() has cleared the handler, so it is read
+                    // once and checked.
+                    Handler handler = sensorHandler;
+                    if (handler == null) {
+                        return;
+                    }
+
+                    // Batched events arrive in a burst; they are queued here and processed
+                    // together once the whole burst has been delivered.
+                    queueEvent(event);
+                    if (!batchPending) {
+                        batchPending = true;
+                        handler.post(batchProcessor);
+                    }
+                } else {
+                    updateHeading(event.values, event.timestamp);
+                    publishOrientation(event.timestamp);
+                    sensorWakeups.incrementAndGet();
+                    sensorEvents.incrementAndGet();
+                }
             }
         }
     };
 
+    private final Runnable batchProcessor = new Runnable() {
+        @Override
+        public void run() {
+            processBatch();
+        }
+    };
+
     /**
      * The location listener used by the orientation manager.
      */
     private LocationListener mLocationListener = new LocationListener() {
         @Override
         public void onLocationChanged(Location location) {
-            OrientationManager.this.location = location;
-            updateGeomagneticField();
-            listener.onLocationChanged(OrientationManager.this);
+            state.set(state.get().withLocation(location));
+            updateDeclination(location);
+            notifyListener(locationChangedNotifier);
+
+            if (samplingPolicy.onLocation(location)) {
+                requestLocationUpdates();
+            }
         }
 
         @Override
@@ -126,87 +234,361 @@ public class OrientationManager {
 
     /**
      * Initializes a new instance of {@code OrientationManager}, using the specified context to
-     * access system services.
+     * access system services. Sensor and location updates are processed on the main thread.
      */
     public OrientationManager(SensorManager sensorManager, LocationManager locationManager) {
+        this(sensorManager, locationManager, false);
+    }
+
+    /**
+     * Initializes a new instance of {@code OrientationManager}, using the specified context to
+     * access system services.
+     *
+     * @param useSensorThread true to process sensor and location updates on a dedicated thread,
+     *         so that they are not delayed by work on the main thread
+     */
+    public OrientationManager(SensorManager sensorManager, LocationManager locationManager,
+            boolean useSensorThread) {
         rotationMatrix = new float[16];
         orientation = new float[9];
         this.sensorManager = sensorManager;
         this.locationManager = locationManager;
+        this.useSensorThread = useSensorThread;
     }
 
     /**
      * Starts tracking the user's location and orientation.
      */
-    public void start() {
+    public synchronized void start() {
         if (!tracking) {
-            sensorManager.registerListener(mSensorListener,
-                    sensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR),
-                    SensorManager.SENSOR_DELAY_UI);
-
-            // The rotation vector sensor doesn't give us accuracy updates, so we observe the
-            // magnetic field sensor solely for those.
-            sensorManager.registerListener(mSensorListener,
-                    sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD),
-                    SensorManager.SENSOR_DELAY_UI);
+            tracking = true;
+            headingFilter.reset();
+            samplingPolicy.reset();
 
+            // The last known location is used before any callbacks can arrive, so that the sensor
+            // thread sees it when it starts.
             Location lastLocation = locationManager
                     .getLastKnownLocation(LocationManager.PASSIVE_PROVIDER);
             if (lastLocation != null) {
                 long locationAge = lastLocation.getTime() - System.currentTimeMillis();
                 if (locationAge < MAX_LOCATION_AGE_MILLIS) {
-                    location = lastLocation;
-                    updateGeomagneticField();
+                    state.set(state.get().withLocation(lastLocation));
+                    updateDeclination(lastLocation);
                 }
             }
 
-            Criteria criteria = new Criteria();
-            criteria.setAccuracy(Criteria.ACCURACY_FINE);
-            criteria.setBearingRequired(false);
-            criteria.setSpeedRequired(false);
-
-            List<String> providers =
-                    locationManager.getProviders(criteria, true /* enabledOnly */);
-            for (String provider : providers) {
-                locationManager.requestLocationUpdates(provider,
-                        MILLIS_BETWEEN_LOCATIONS, METERS_BETWEEN_LOCATIONS, mLocationListener,
-                        Looper.getMainLooper());
+            queueStart = 0;
+            queueSize = 0;
+            batchPending = false;
+
+            Looper looper = Looper.getMainLooper();
+            if (useSensorThread) {
+                sensorThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+                sensorThread.start();
+                looper = sensorThread.getLooper();
             }
+            sensorHandler = new Handler(looper);
 
-            tracking = true;
+            rotationSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
+            registerRotationSensor();
+
+            // The rotation vector sensor doesn't give us accuracy updates, so we observe the
+            // magnetic field sensor solely for those, which needs no more than the lowest rate.
+            Sensor magneticSensor = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
+            if (batchingEnabled && magneticSensor.getFifoMaxEventCount() > 0) {
+                sensorManager.registerListener(mSensorListener, magneticSensor,
+                        SensorManager.SENSOR_DELAY_NORMAL, MAGNETIC_MAX_REPORT_LATENCY_MICROS,
+                        sensorHandler);
+            } else {
+                sensorManager.registerListener(mSensorListener, magneticSensor,
+                        SensorManager.SENSOR_DELAY_NORMAL, sensorHandler);
+            }
+
+            requestLocationUpdates();
+        }
+    }
+
+    /**
+     * Enables or disables batching of sensor events in the sensor hardware, where it is
+     * supported. While the head is still, batching lets the sensors collect several events before
+     * waking the app up, at the cost of some latency. This takes effect the next time tracking
+     * starts.
+     */
+    public synchronized void setSensorBatchingEnabled(boolean enabled) {
+        batchingEnabled = enabled;
+    }
+
+    /**
+     * Returns the number of rotation vector events received since the orientation manager was
+     * created.
+     */
+    public long getSensorEventCount() {
+        return sensorEvents.get();
+    }
+
+    /**
+     * Returns the number of times rotation vector events woke the app up since the orientation
+     * manager was created. Without batching, this is the same as the number of events.
+     */
+    public long getSensorWakeupCount() {
+        return sensorWakeups.get();
+    }
+
+    /**
+     * Returns the number of location fixes whose magnetic declination was found in the cache.
+     */
+    public long getDeclinationHitCount() {
+        return declinationCache.getHitCount();
+    }
+
+    /**
+     * Returns the number of location fixes for which the geomagnetic model had to be evaluated.
+     */
+    public long getDeclinationMissCount() {
+        return declinationCache.getMissCount();
+    }
+
+    /**
+     * Tells the orientation manager whether any places are close enough to be shown. While none
+     * are, the user's location is tracked less often and less precisely. This can be called on
+     * any thread.
+     */
+    public void setPlacesInRange(final boolean placesInRange) {
+        Handler handler = sensorHandler;
+        if (handler != null) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (samplingPolicy.setPlacesInRange(placesInRange)) {
+                        requestLocationUpdates();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Registers for rotation vector updates at the rate chosen by the sampling policy, replacing
+     * any previous registration.
+     */
+    private synchronized void registerRotationSensor() {
+        if (tracking) {
+            // Batching is only worth its latency while the head is still; while it turns, every
+            // event is needed as soon as possible.
+            boolean batch = batchingEnabled && rotationSensor.getFifoMaxEventCount() > 0
+                    && samplingPolicy.getSensorDelay() == SamplingPolicy.STILL_SENSOR_DELAY;
+
+            sensorManager.unregisterListener(mSensorListener, rotationSensor);
+            if (batch) {
+                sensorManager.registerListener(mSensorListener, rotationSensor,
+                        samplingPolicy.getSensorDelay(), STILL_MAX_REPORT_LATENCY_MICROS,
+                        sensorHandler);
+            } else {
+                sensorManager.registerListener(mSensorListener, rotationSensor,
+                        samplingPolicy.getSensorDelay(), sensorHandler);
+            }
+            batching = batch;
+        }
+    }
+
+    /**
+     * Copies a rotation vector event into the queue, dropping the oldest queued event if it is
+     * full.
+     */
+    private void queueEvent(SensorEvent event) {
+        if (queueSize == MAX_QUEUED_EVENTS) {
+            queueStart = (queueStart + 1) % MAX_QUEUED_EVENTS;
+            queueSize--;
+        }
+
+        int slot = (queueStart + queueSize) % MAX_QUEUED_EVENTS;
+        float[] values = queuedValues[slot];
+        if (values == null || values.length != event.values.length) {
+            values = new float[event.values.length];
+            queuedValues[slot] = values;
+        }
+        System.arraycopy(event.values, 0, values, 0, values.length);
+        queuedTimestamps[slot] = event.timestamp;
+        queueSize++;
+
+        sensorEvents.incrementAndGet();
+    }
+
+    /**
+     * Runs the queued events through the heading filter in one pass, then publishes the result
+     * and notifies the listener once for the whole batch.
+     */
+    private void processBatch() {
+        batchPending = false;
+        if (queueSize == 0) {
+            return;
+        }
+
+        long timestamp = 0;
+        for (int i = 0; i < queueSize; i++) {
+            int slot = (queueStart + i) % MAX_QUEUED_EVENTS;
+            timestamp = queuedTimestamps[slot];
+            updateHeading(queuedValues[slot], timestamp);
+        }
+        queueStart = 0;
+        queueSize = 0;
+
+        publishOrientation(timestamp);
+        sensorWakeups.incrementAndGet();
+    }
+
+    /**
+     * Computes the heading and pitch from a rotation vector and runs the heading through the
+     * filter.
+     */
+    private void updateHeading(float[] rotationVector, long timestamp) {
+        SensorManager.getRotationMatrixFromVector(rotationMatrix, rotationVector);
+        SensorManager.remapCoordinateSystem(rotationMatrix, SensorManager.AXIS_X,
+                SensorManager.AXIS_Z, rotationMatrix);
+        SensorManager.getOrientation(rotationMatrix, orientation);
+
+        // Store the pitch (used to display a message indicating that the user's head
+        // angle is too steep to produce reliable results.
+        pitch = (float) Math.toDegrees(orientation[1]);
+
+        // Convert the heading (which is relative to magnetic north) to one that is
+        // relative to true north, using the user's current location to compute this.
+        float magneticHeading = (float) Math.toDegrees(orientation[0]);
+        float heading = MathUtils.mod(computeTrueNorth(magneticHeading), 360.0f)
+                - ARM_DISPLACEMENT_DEGREES;
+
+        // Smooth the heading and estimate how fast it is changing, so that it can be
+        // extrapolated to the time each frame is shown. The time base of sensor timestamps
+        // varies between devices, so they are only used for the intervals between events and
+        // the estimate is stamped with the time it is published.
+        headingFilter.update(heading, timestamp);
+    }
+
+    /**
+     * Publishes the filtered heading, adapts the sensor rate to it and notifies the listener.
+     *
+     * @param timestamp the sensor timestamp of the last event that went into the heading
+     */
+    private void publishOrientation(long timestamp) {
+        state.set(state.get().withOrientation(headingFilter.getHeading(),
+                headingFilter.getVelocity(), SystemClock.elapsedRealtimeNanos(), pitch));
+
+        if (samplingPolicy.onHeadingVelocity(headingFilter.getVelocity(), timestamp)) {
+            registerRotationSensor();
+        }
+
+        if (!useSensorThread || orientationChangePending.compareAndSet(false, true)) {
+            notifyListener(orientationChangedNotifier);
+        }
+    }
+
+    /**
+     * Requests location updates as often as the sampling policy decides, from the cheapest
+     * provider that is accurate enough, replacing any previous request.
+     */
+    private synchronized void requestLocationUpdates() {
+        if (tracking) {
+            SamplingPolicy.LocationMode mode = samplingPolicy.getLocationMode();
+            String provider = locationManager.getBestProvider(mode.getCriteria(),
+                    true /* enabledOnly */);
+
+            locationManager.removeUpdates(mLocationListener);
+            if (provider != null) {
+                locationManager.requestLocationUpdates(provider, mode.minTimeMillis,
+                        mode.minDistanceMeters, mLocationListener, sensorHandler.getLooper());
+            } else {
+                Log.w(TAG, "No location provider is enabled");
+            }
         }
     }
 
     /**
      * Stops tracking the user's location and orientation. Listeners will no longer be notified of
      * these events.
+     * <p>
+     * This waits for the sensor thread to finish, so that a later {@link #start()} resets the
+     * event queue and the filters while no other thread is using them. The wait happens outside
+     * of the lock, because the sensor thread takes it to change the sensor rate.
      */
     public void stop() {
+        HandlerThread oldSensorThread = stopTracking();
+        if (oldSensorThread != null) {
+            try {
+                oldSensorThread.join();
+            } catch (InterruptedException e) {
+                Log.d(TAG, "Interrupted while waiting for the sensor thread", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Removes the listeners and asks the sensor thread to quit.
+     *
+     * @return the sensor thread that is quitting, or null if there is none
+     */
+    private synchronized HandlerThread stopTracking() {
+        HandlerThread oldSensorThread = null;
         if (tracking) {
+            // The listeners are removed before the handler is cleared and its thread quits, so
+            // that no new callbacks are dispatched to a thread that is going away.
             sensorManager.unregisterListener(mSensorListener);
             locationManager.removeUpdates(mLocationListener);
             tracking = false;
+            batching = false;
+
+            Handler handler = sensorHandler;
+            sensorHandler = null;
+            handler.removeCallbacks(batchProcessor);
+            if (sensorThread != null) {
+                sensorThread.quit();
+                oldSensorThread = sensorThread;
+                sensorThread = null;
+            }
+
+            long wakeups = sensorWakeups.get();
+            if (wakeups > 0) {
+                Log.d(TAG, String.format("Rotation vector events per wakeup: %.2f",
+                        sensorEvents.get() / (double) wakeups));
+            }
+            Log.d(TAG, "Declination cache hits: " + declinationCache.getHitCount()
+                    + ", misses: " + declinationCache.getMissCount());
+
+            // Notifications that were posted before the listeners were removed are dropped.
+            mainHandler.removeCallbacks(orientationChangedNotifier);
+            mainHandler.removeCallbacks(locationChangedNotifier);
+            mainHandler.removeCallbacks(accuracyChangedNotifier);
+            orientationChangePending.set(false);
         }
+        return oldSensorThread;
+    }
+
+    /**
+     * Returns a snapshot of the user's current orientation and location. This can be called from
+     * any thread.
+     */
+    public OrientationState getState() {
+        return state.get();
     }
 
     public boolean hasInterference() {
-        return hasInterference;
+        return state.get().hasInterference();
     }
 
     public boolean hasLocation() {
-        return location != null;
+        return state.get().hasLocation();
     }
 
     public float getHeading() {
-        return heading;
+        return state.get().getHeading();
     }
 
     public float getPitch() {
-        return pitch;
+        return state.get().getPitch();
     }
 
     public Location getLocation() {
-        return location;
+        return state.get().getLocation();
     }
 
     public void setBenefitsCompassListener(BenefitsCompassListener benefitsCompassListener) {
@@ -214,12 +596,24 @@ public class OrientationManager {
     }
 
     /**
-     * Updates the cached instance of the geomagnetic field after a location change.
+     * Notifies the listener on the main thread, directly if the callback is already running
+     * there.
+     */
+    private void notifyListener(Runnable notifier) {
+        if (useSensorThread) {
+            mainHandler.post(notifier);
+        } else {
+            notifier.run();
+        }
+    }
+
+    /**
+     * Updates the magnetic declination after a location change. The geomagnetic model is only
+     * evaluated when the user has moved into a new cell of the {@link DeclinationCache}.
      */
-    private void updateGeomagneticField() {
-        geomagneticField = new GeomagneticField((float) location.getLatitude(),
-                (float) location.getLongitude(), (float) location.getAltitude(),
-                location.getTime());
+    private void updateDeclination(Location location) {
+        declination = declinationCache.getDeclination(location.getLatitude(),
+                location.getLongitude(), location.getAltitude(), location.getTime());
     }
 
     /**
@@ -230,8 +624,9 @@ public class OrientationManager {
      * @return the heading (in degrees) relative to true north
      */
     private float computeTrueNorth(float heading) {
-        if (geomagneticField != null) {
-            return heading + geomagneticField.getDeclination();
+        float currentDeclination = declination;
+        if (!Float.isNaN(currentDeclination)) {
+            return heading + currentDeclination;
         } else {
             return heading;
         }
@@ -0,0 +1,102 @@
+package com.google.android.glass.sample.compass;
+
+import com.google.android.glass.sample.compass.util.HeadingFilter;
+
+import android.location.Location;
+
+/**
+ * An immutable snapshot of the user's orientation and location, as published by
+ * {@link OrientationManager}. Readers on any thread get a consistent set of values from a single
+ * snapshot without locking; every change produces a new snapshot.
+ */
+public final class OrientationState {
+
+    /** The state before any sensor or location updates have been received. */
+    static final OrientationState INITIAL = new OrientationState(0, 0, 0, 0, null, false);
+
+    private final float heading;
+    private final float angularVelocity;
+    private final long timestampNanos;
+    private final float pitch;
+    private final Location location;
+    private final boolean hasInterference;
+
+    private OrientationState(float heading, float angularVelocity, long timestampNanos,
+            float pitch, Location location, boolean hasInterference) {
+        this.heading = heading;
+        this.angularVelocity = angularVelocity;
+        this.timestampNanos = timestampNanos;
+        this.pitch = pitch;
+        this.location = location;
+        this.hasInterference = hasInterference;
+    }
+
+    /**
+     * Returns the filtered heading, in degrees, as of {@link #getTimestampNanos()}.
+     */
+    public float getHeading() {
+        return heading;
+    }
+
+    /**
+     * Returns the rate at which the heading is changing, in degrees per second.
+     */
+    public float getAngularVelocity() {
+        return angularVelocity;
+    }
+
+    /**
+     * Returns the time that the heading was estimated for, in the
+     * {@link android.os.SystemClock#elapsedRealtimeNanos()} time base.
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * Predicts the heading at the specified time, which is usually when the frame being drawn
+     * will be shown, from the current heading and angular velocity.
+     *
+     * @param timeNanos the time in the {@link android.os.SystemClock#elapsedRealtimeNanos()}
+     *         time base
+     */
+    public float predictHeading(long timeNanos) {
+        return HeadingFilter.predict(heading, angularVelocity, timeNanos - timestampNanos);
+    }
+
+    public float getPitch() {
+        return pitch;
+    }
+
+    public boolean hasLocation() {
+        return location != null;
+    }
+
+    /**
+     * Returns the user's location, or null if it is not known yet. The returned object must not
+     * be modified.
+     */
+    public Location getLocation() {
+        return location;
+    }
+
+    public boolean hasInterference() {
+        return hasInterference;
+    }
+
+    OrientationState withOrientation(float heading, float angularVelocity, long timestampNanos,
+            float pitch) {
+        return new OrientationState(heading, angularVelocity, timestampNanos, pitch, location,
+                hasInterference);
+    }
+
+    OrientationState withLocation(Location location) {
+        return new OrientationState(heading, angularVelocity, timestampNanos, pitch, location,
+                hasInterference);
+    }
+
+    OrientationState withInterference(boolean hasInterference) {
+        return new OrientationState(heading, angularVelocity, timestampNanos, pitch, location,
+                hasInterference);
+    }
+}
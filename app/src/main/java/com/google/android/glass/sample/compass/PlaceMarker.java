@@ -0,0 +1,43 @@
+package com.google.android.glass.sample.compass;
+
+import com.google.android.glass.sample.compass.model.Place;
+
+/**
+ * The values needed to draw a nearby place on the compass. These are cached between location
+ * changes so that drawing a frame does not have to recompute or allocate anything.
+ */
+class PlaceMarker {
+
+    Place place;
+
+    /** Used by {@link BenefitsCompassView} to tell which markers are still in use. */
+    int generation;
+
+    /** The bearing from the user to the place, in degrees. */
+    float bearing;
+    float distanceKm;
+    int distanceTenths;
+
+    String label;
+    int textWidth;
+    int textHeight;
+
+    /**
+     * The horizontal extent of the label (including its pin and margins), in degrees relative to
+     * north, as computed by {@link LabelLayout}.
+     */
+    float startDegrees;
+    float endDegrees;
+
+    /** The vertical extent of the label, in pixels relative to the center of the view. */
+    int labelTop;
+    int labelBottom;
+
+    /** False if there was no room to show the label without covering the compass directions. */
+    boolean labelVisible;
+
+    void setPlace(Place place) {
+        this.place = place;
+        label = null;
+    }
+}
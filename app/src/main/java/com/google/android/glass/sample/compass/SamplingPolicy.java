@@ -0,0 +1,187 @@
+package com.google.android.glass.sample.compass;
+
+import android.hardware.SensorManager;
+import android.location.Criteria;
+import android.location.Location;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how often {@link OrientationManager} samples the sensors and the user's location, so
+ * that the compass only pays for the precision it can actually use.
+ * <p>
+ * The rotation vector sensor runs at a low rate while the head is still and at a high rate while
+ * it is turning. Location updates are requested less often, and from a cheaper provider, when
+ * the user is not moving or when no places are close enough to be shown.
+ * <p>
+ * This class is not thread-safe; it is only used on the thread that receives the sensor and
+ * location callbacks.
+ */
+class SamplingPolicy {
+
+    /** How often location updates are requested, and how accurate they have to be. */
+    enum LocationMode {
+        /** The user is moving among nearby places, so their bearings must stay accurate. */
+        TRACKING(Criteria.ACCURACY_FINE, Criteria.NO_REQUIREMENT, TimeUnit.SECONDS.toMillis(3), 2),
+
+        /** The user is standing still, so the places only move if the user starts walking. */
+        STATIONARY(Criteria.ACCURACY_FINE, Criteria.NO_REQUIREMENT,
+                TimeUnit.SECONDS.toMillis(15), 5),
+
+        /**
+         * No places are in range, so only a coarse location is needed to notice when the user
+         * approaches some.
+         */
+        IDLE(Criteria.ACCURACY_COARSE, Criteria.POWER_LOW, TimeUnit.SECONDS.toMillis(60), 50);
+
+        final int accuracy;
+        final int powerRequirement;
+        final long minTimeMillis;
+        final float minDistanceMeters;
+
+        LocationMode(int accuracy, int powerRequirement, long minTimeMillis,
+                float minDistanceMeters) {
+            this.accuracy = accuracy;
+            this.powerRequirement = powerRequirement;
+            this.minTimeMillis = minTimeMillis;
+            this.minDistanceMeters = minDistanceMeters;
+        }
+
+        /**
+         * Returns the criteria for the cheapest location provider that is accurate enough for
+         * this mode.
+         */
+        Criteria getCriteria() {
+            Criteria criteria = new Criteria();
+            criteria.setAccuracy(accuracy);
+            criteria.setPowerRequirement(powerRequirement);
+            criteria.setAltitudeRequired(false);
+            criteria.setBearingRequired(false);
+            criteria.setSpeedRequired(false);
+            criteria.setCostAllowed(false);
+            return criteria;
+        }
+    }
+
+    /** The sensor rates used while the head is still and while it is turning. */
+    static final int STILL_SENSOR_DELAY = SensorManager.SENSOR_DELAY_NORMAL;
+    static final int TURNING_SENSOR_DELAY = SensorManager.SENSOR_DELAY_GAME;
+
+    /** The angular velocity, in degrees per second, above which the head is turning. */
+    private static final float TURNING_VELOCITY = 10.0f;
+
+    /**
+     * The angular velocity below which the head has to stay for {@link #STILL_NANOS} to be
+     * considered still again. The gap between the two thresholds keeps the rate from flapping.
+     */
+    private static final float STILL_VELOCITY = 3.0f;
+    private static final long STILL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The user is stationary once all the locations received for this long are within
+     * {@link #STATIONARY_RADIUS_METERS} (or their accuracy, if that is worse) of each other.
+     */
+    private static final long STATIONARY_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final float STATIONARY_RADIUS_METERS = 10.0f;
+
+    private int sensorDelay = STILL_SENSOR_DELAY;
+    private long slowSinceNanos;
+
+    private boolean placesInRange = true;
+    private Location anchor;
+    private long anchorMillis;
+    private boolean stationary;
+    private LocationMode locationMode = LocationMode.TRACKING;
+
+    /**
+     * Returns the rate at which the rotation vector sensor should currently be sampled.
+     */
+    int getSensorDelay() {
+        return sensorDelay;
+    }
+
+    /**
+     * Returns how the user's location should currently be sampled.
+     */
+    LocationMode getLocationMode() {
+        return locationMode;
+    }
+
+    /**
+     * Updates the policy with the angular velocity of the head.
+     *
+     * @param velocity the angular velocity, in degrees per second
+     * @param timestampNanos the time of the measurement, in nanoseconds
+     * @return true if the sensor rate should be changed
+     */
+    boolean onHeadingVelocity(float velocity, long timestampNanos) {
+        float speed = Math.abs(velocity);
+        int delay = sensorDelay;
+        if (speed > TURNING_VELOCITY) {
+            delay = TURNING_SENSOR_DELAY;
+        }
+        if (speed >= STILL_VELOCITY) {
+            slowSinceNanos = timestampNanos;
+        } else if (timestampNanos - slowSinceNanos > STILL_NANOS) {
+            delay = STILL_SENSOR_DELAY;
+        }
+
+        boolean changed = (delay != sensorDelay);
+        sensorDelay = delay;
+        return changed;
+    }
+
+    /**
+     * Updates the policy with a new location of the user.
+     *
+     * @return true if the location mode should be changed
+     */
+    boolean onLocation(Location location) {
+        float radius = Math.max(STATIONARY_RADIUS_METERS,
+                location.hasAccuracy() ? location.getAccuracy() : 0);
+        if (anchor == null || anchor.distanceTo(location) > radius) {
+            anchor = location;
+            anchorMillis = location.getTime();
+            stationary = false;
+        } else if (location.getTime() - anchorMillis > STATIONARY_MILLIS) {
+            stationary = true;
+        }
+        return updateLocationMode();
+    }
+
+    /**
+     * Tells the policy whether any places are close enough to be shown.
+     *
+     * @return true if the location mode should be changed
+     */
+    boolean setPlacesInRange(boolean placesInRange) {
+        this.placesInRange = placesInRange;
+        return updateLocationMode();
+    }
+
+    /**
+     * Forgets the motion seen so far, for when tracking starts again.
+     */
+    void reset() {
+        sensorDelay = STILL_SENSOR_DELAY;
+        slowSinceNanos = 0;
+        anchor = null;
+        stationary = false;
+        updateLocationMode();
+    }
+
+    private boolean updateLocationMode() {
+        LocationMode mode;
+        if (!placesInRange) {
+            mode = LocationMode.IDLE;
+        } else if (stationary) {
+            mode = LocationMode.STATIONARY;
+        } else {
+            mode = LocationMode.TRACKING;
+        }
+
+        boolean changed = (mode != locationMode);
+        locationMode = mode;
+        return changed;
+    }
+}
@@ -0,0 +1,93 @@
+package com.google.android.glass.sample.compass;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.view.View;
+
+/**
+ * Caches the drawing of a view whose content rarely changes in a bitmap, so that each frame only
+ * has to draw the bitmap instead of the view's whole hierarchy.
+ * <p>
+ * The view is rendered at full opacity and its alpha is applied when the bitmap is drawn, so
+ * fading the view in or out does not render it again. Nothing is drawn at all while the view is
+ * hidden or fully transparent. Whoever changes the content of the view calls
+ * {@link #invalidate()}; the bitmap is also rendered again when the size of the view changes.
+ * <p>
+ * The layer is drawn and released on the render thread. A render thread that is quitting may
+ * still overlap the one that replaces it, so those two are synchronized; {@link #invalidate()} can
+ * be called on any thread.
+ */
+class ViewLayer {
+
+    private final View view;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private volatile boolean dirty = true;
+    private Bitmap bitmap;
+    private Canvas bitmapCanvas;
+    private volatile int renderCount;
+
+    ViewLayer(View view) {
+        this.view = view;
+    }
+
+    /**
+     * Marks the content of the view as changed, so that it is rendered again before it is next
+     * drawn.
+     */
+    void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Draws the view at its position in its parent, rendering it into the cache first if its
+     * content or size has changed.
+     */
+    synchronized void draw(Canvas canvas) {
+        int alpha = Math.round(view.getAlpha() * 255);
+        int width = view.getWidth();
+        int height = view.getHeight();
+        if (view.getVisibility() != View.VISIBLE || alpha <= 0 || width <= 0 || height <= 0) {
+            return;
+        }
+
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            release();
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            bitmapCanvas = new Canvas(bitmap);
+            dirty = true;
+        }
+
+        if (dirty) {
+            // Cleared before rendering, so that a change made meanwhile is not lost.
+            dirty = false;
+            bitmap.eraseColor(Color.TRANSPARENT);
+            view.draw(bitmapCanvas);
+            renderCount++;
+        }
+
+        paint.setAlpha(Math.min(alpha, 255));
+        canvas.drawBitmap(bitmap, view.getLeft(), view.getTop(), paint);
+    }
+
+    /**
+     * Frees the cached bitmap. The view is rendered again the next time it is drawn.
+     */
+    synchronized void release() {
+        if (bitmap != null) {
+            bitmap.recycle();
+            bitmap = null;
+            bitmapCanvas = null;
+        }
+        dirty = true;
+    }
+
+    /**
+     * Returns the number of times the view has been rendered into the cache.
+     */
+    int getRenderCount() {
+        return renderCount;
+    }
+}
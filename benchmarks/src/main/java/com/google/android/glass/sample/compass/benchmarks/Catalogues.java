@@ -0,0 +1,72 @@
+package com.google.android.glass.sample.compass.benchmarks;
+
+import com.google.android.glass.sample.compass.model.LandmarkFile;
+import com.google.android.glass.sample.compass.model.Place;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic landmark catalogues for the benchmarks.
+ * <p>
+ * Places are spread uniformly over a region of {@value #REGION_SIZE_DEGREES} degrees on a side
+ * (about the size of a small country), so the number of places near a location grows with the
+ * size of the catalogue: a few hundred within ten kilometers for a million places, and often none
+ * for a thousand. The same seed always produces the same catalogue.
+ */
+final class Catalogues {
+
+    /** The south-west corner and size of the region that the places are spread over. */
+    static final double REGION_LATITUDE = 45.0;
+    static final double REGION_LONGITUDE = 5.0;
+    static final double REGION_SIZE_DEGREES = 10.0;
+
+    private static final long SEED = 42;
+
+    private Catalogues() {
+    }
+
+    /**
+     * Returns a catalogue of the specified number of places.
+     */
+    static List<Place> createPlaces(int size) {
+        Random random = new Random(SEED);
+        List<Place> places = new ArrayList<Place>(size);
+        for (int i = 0; i < size; i++) {
+            places.add(new Place(randomLatitude(random), randomLongitude(random),
+                    "Place " + i, "Synthetic place number " + i));
+        }
+        return places;
+    }
+
+    /**
+     * Returns the specified places converted to the {@link LandmarkFile} format.
+     */
+    static byte[] toLandmarkFile(List<Place> places) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            LandmarkFile.write(places, SEED, out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            // Writing to memory does not fail.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a random latitude within the region.
+     */
+    static double randomLatitude(Random random) {
+        return REGION_LATITUDE + random.nextDouble() * REGION_SIZE_DEGREES;
+    }
+
+    /**
+     * Returns a random longitude within the region.
+     */
+    static double randomLongitude(Random random) {
+        return REGION_LONGITUDE + random.nextDouble() * REGION_SIZE_DEGREES;
+    }
+}
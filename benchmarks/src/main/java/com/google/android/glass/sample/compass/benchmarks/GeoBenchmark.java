@@ -0,0 +1,104 @@
+package com.google.android.glass.sample.compass.benchmarks;
+
+import com.google.android.glass.sample.compass.util.LocalFrame;
+import com.google.android.glass.sample.compass.util.MathUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the geographical functions that are called for every nearby place on every location
+ * update and every frame.
+ * <p>
+ * Each invocation works on the next of a fixed set of random inputs, so that the JIT compiler
+ * cannot fold the computation into a constant. The user is placed in the middle of the synthetic
+ * region, and the places are within ten kilometers of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoBenchmark {
+
+    /** The number of inputs, a power of two so that the next one can be found with a mask. */
+    private static final int INPUT_COUNT = 1024;
+
+    private static final double USER_LATITUDE =
+            Catalogues.REGION_LATITUDE + Catalogues.REGION_SIZE_DEGREES / 2;
+    private static final double USER_LONGITUDE =
+            Catalogues.REGION_LONGITUDE + Catalogues.REGION_SIZE_DEGREES / 2;
+
+    /** About ten kilometers in each direction at the user's latitude. */
+    private static final double SPREAD_DEGREES = 0.09;
+
+    private final double[] latitudes = new double[INPUT_COUNT];
+    private final double[] longitudes = new double[INPUT_COUNT];
+    private final float[] headings = new float[INPUT_COUNT];
+
+    private LocalFrame frame;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < INPUT_COUNT; i++) {
+            latitudes[i] = USER_LATITUDE + (random.nextDouble() * 2 - 1) * SPREAD_DEGREES;
+            longitudes[i] = USER_LONGITUDE + (random.nextDouble() * 2 - 1) * SPREAD_DEGREES;
+            // Headings as they come out of the filter, which may be slightly out of range.
+            headings[i] = random.nextFloat() * 720.0f - 360.0f;
+        }
+        frame = new LocalFrame(USER_LATITUDE, USER_LONGITUDE);
+    }
+
+    @Benchmark
+    public float getDistance() {
+        int i = nextInput();
+        return MathUtils.getDistance(USER_LATITUDE, USER_LONGITUDE, latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public float getBearing() {
+        int i = nextInput();
+        return MathUtils.getBearing(USER_LATITUDE, USER_LONGITUDE, latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public float localFrameDistance() {
+        int i = nextInput();
+        return frame.getDistance(latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public float localFrameBearing() {
+        int i = nextInput();
+        return frame.getBearing(latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public float mod() {
+        return MathUtils.mod(headings[nextInput()], 360.0f);
+    }
+
+    @Benchmark
+    public int getHalfWindIndex() {
+        return MathUtils.getHalfWindIndex(headings[nextInput()]);
+    }
+
+    private int nextInput() {
+        next = (next + 1) & (INPUT_COUNT - 1);
+        return next;
+    }
+}
@@ -0,0 +1,65 @@
+package com.google.android.glass.sample.compass.benchmarks;
+
+import com.google.android.glass.sample.compass.model.LandmarkFile;
+import com.google.android.glass.sample.compass.model.Landmarks;
+import com.google.android.glass.sample.compass.model.Place;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading catalogues of different sizes: converting the places to a
+ * {@link LandmarkFile}, which happens the first time the application starts, and indexing an
+ * existing file, which happens on every start and should not depend on the size of the
+ * catalogue.
+ * <p>
+ * The file is read from a heap buffer rather than mapped from storage, so the time to page it in
+ * is not included. Parsing the JSON resource is not measured, as it uses the Android JSON reader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class LandmarkLoadingBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private List<Place> places;
+    private byte[] data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        places = Catalogues.createPlaces(size);
+        data = Catalogues.toLandmarkFile(places);
+    }
+
+    @Benchmark
+    public byte[] convert() {
+        return Catalogues.toLandmarkFile(places);
+    }
+
+    @Benchmark
+    public Landmarks load() throws IOException {
+        Landmarks landmarks = new Landmarks();
+        landmarks.load(new LandmarkFile(ByteBuffer.wrap(data)));
+        return landmarks;
+    }
+}
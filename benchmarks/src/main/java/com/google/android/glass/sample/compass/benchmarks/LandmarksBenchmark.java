@@ -0,0 +1,97 @@
+package com.google.android.glass.sample.compass.benchmarks;
+
+import com.google.android.glass.sample.compass.model.LandmarkFile;
+import com.google.android.glass.sample.compass.model.Landmarks;
+import com.google.android.glass.sample.compass.model.Place;
+import com.google.android.glass.sample.compass.model.SectorSelection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the landmarks near the user, which happens on every location update, in
+ * catalogues of different sizes: all of them within ten kilometers, and the nearest few in each
+ * quarter of the horizon picked out of those, as the compass publishes them. The catalogue is
+ * loaded once per trial, and each invocation queries the next of a fixed set of random locations
+ * within the synthetic region.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class LandmarksBenchmark {
+
+    /** The number of query locations, a power of two so that they can be cycled with a mask. */
+    private static final int QUERY_COUNT = 256;
+
+    /** The sectors and places per sector that the compass publishes. */
+    private static final int SECTOR_COUNT = 4;
+    private static final int PLACES_PER_SECTOR = 8;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private final double[] latitudes = new double[QUERY_COUNT];
+    private final double[] longitudes = new double[QUERY_COUNT];
+
+    private Landmarks landmarks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] data = Catalogues.toLandmarkFile(Catalogues.createPlaces(size));
+        landmarks = new Landmarks();
+        landmarks.load(new LandmarkFile(ByteBuffer.wrap(data)));
+
+        Random random = new Random(2);
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            latitudes[i] = Catalogues.randomLatitude(random);
+            longitudes[i] = Catalogues.randomLongitude(random);
+        }
+    }
+
+    /**
+     * Cycles through the query locations. Each thread has its own position in the cycle.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int nextQuery() {
+            next = (next + 1) & (QUERY_COUNT - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public List<Place> getNearbyLandmarks(Cursor cursor) {
+        int i = cursor.nextQuery();
+        return landmarks.getNearbyLandmarks(latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public List<Place> selectNearbyLandmarks(Cursor cursor) {
+        int i = cursor.nextQuery();
+        SectorSelection selection = new SectorSelection(SECTOR_COUNT, PLACES_PER_SECTOR);
+        selection.update(latitudes[i], longitudes[i],
+                landmarks.getNearbyLandmarks(latitudes[i], longitudes[i]));
+        return selection.getSelection();
+    }
+}
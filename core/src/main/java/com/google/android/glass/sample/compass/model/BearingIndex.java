@@ -0,0 +1,119 @@
+package com.google.android.glass.sample.compass.model;
+
+import com.google.android.glass.sample.compass.util.LocalFrame;
+import com.google.android.glass.sample.compass.util.MathUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The bearings from a location to a set of places, sorted so that the place closest to any
+ * heading can be found with a binary search. An index is built whenever the location or the
+ * places change, which is much less often than the heading does.
+ * <p>
+ * Instances are immutable, so they can be published to and queried from any thread.
+ */
+public final class BearingIndex {
+
+    private final Place[] mPlaces;
+    private final float[] mBearings;
+
+    /**
+     * Computes the bearings from the specified coordinates to the specified places, which are
+     * expected to be nearby (see {@link LocalFrame}).
+     */
+    public BearingIndex(double latitude, double longitude, List<Place> places) {
+        LocalFrame frame = new LocalFrame(latitude, longitude);
+        int size = places.size();
+
+        // Bearings are never negative, so the bits of a float sort in the same order as its
+        // value; the position of each place goes in the low bits of the same key.
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            Place place = places.get(i);
+            float bearing = frame.getBearing(place.getLatitude(), place.getLongitude());
+            keys[i] = ((long) Float.floatToIntBits(bearing) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        mPlaces = new Place[size];
+        mBearings = new float[size];
+        for (int i = 0; i < size; i++) {
+            mPlaces[i] = places.get((int) keys[i]);
+            mBearings[i] = Float.intBitsToFloat((int) (keys[i] >>> 32));
+        }
+    }
+
+    /**
+     * Returns the number of places in the index.
+     */
+    public int size() {
+        return mPlaces.length;
+    }
+
+    /**
+     * Returns the place at the specified position, in order of increasing bearing.
+     */
+    public Place getPlace(int position) {
+        return mPlaces[position];
+    }
+
+    /**
+     * Returns the bearing to the place at the specified position, in degrees.
+     */
+    public float getBearing(int position) {
+        return mBearings[position];
+    }
+
+    /**
+     * Returns the bearing to the specified place, in degrees, or NaN if the place is not in the
+     * index. This is a linear search, for the occasional lookup of a single place.
+     */
+    public float findBearing(Place place) {
+        for (int i = 0; i < mPlaces.length; i++) {
+            if (mPlaces[i].equals(place)) {
+                return mBearings[i];
+            }
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * Returns the position of the place whose bearing is closest to the specified heading, going
+     * either way around the circle, or -1 if the index is empty.
+     *
+     * @param heading the heading, in degrees
+     */
+    public int findClosest(float heading) {
+        int size = mPlaces.length;
+        if (size == 0) {
+            return -1;
+        }
+
+        // The closest bearing is either the first one at or after the heading or the one before
+        // it, wrapping around at both ends.
+        float normalizedHeading = MathUtils.mod(heading, 360.0f);
+        int after = lowerBound(normalizedHeading) % size;
+        int before = (after + size - 1) % size;
+        return MathUtils.getAngleDifference(mBearings[before], normalizedHeading)
+                < MathUtils.getAngleDifference(mBearings[after], normalizedHeading)
+                ? before : after;
+    }
+
+    /**
+     * Returns the index of the first bearing that is at least the specified value.
+     */
+    private int lowerBound(float bearing) {
+        int low = 0;
+        int high = mBearings.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mBearings[middle] < bearing) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
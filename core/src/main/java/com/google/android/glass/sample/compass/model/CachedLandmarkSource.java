@@ -0,0 +1,98 @@
+package com.google.android.glass.sample.compass.model;
+
+import com.google.android.glass.sample.compass.util.Logging;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A {@link LandmarkSource} that converts places from another format (such as JSON) to a
+ * {@link LandmarkFile} the first time it is opened, and simply maps that file on later opens.
+ * <p>
+ * The file is converted again whenever the stamp of the original data changes, for example
+ * because an application was updated. If the file cannot be written, the converted data is kept
+ * in memory instead. If the original data cannot be read completely, nothing is written, so that
+ * a partial conversion is never mistaken for an up-to-date file on later opens.
+ */
+public class CachedLandmarkSource implements LandmarkSource {
+
+    private static final String TAG = CachedLandmarkSource.class.getSimpleName();
+
+    /**
+     * Reads the places to be converted.
+     */
+    public interface PlaceReader {
+
+        /**
+         * Returns the places in the original data. A reader must not return a partial list when
+         * the data is truncated or malformed, since the list would be cached as if it were
+         * complete.
+         *
+         * @throws IOException if the data cannot be read completely
+         */
+        List<Place> readPlaces() throws IOException;
+    }
+
+    private final File mFile;
+    private final long mSourceStamp;
+    private final PlaceReader mReader;
+
+    /**
+     * Creates a source that caches the converted places in the specified file.
+     *
+     * @param file the file that holds the converted places
+     * @param sourceStamp a value that changes whenever the original data does
+     * @param reader reads the original data
+     */
+    public CachedLandmarkSource(File file, long sourceStamp, PlaceReader reader) {
+        mFile = file;
+        mSourceStamp = sourceStamp;
+        mReader = reader;
+    }
+
+    @Override
+    public LandmarkFile open() throws IOException {
+        if (mFile.exists()) {
+            try {
+                LandmarkFile landmarkFile = LandmarkFile.map(mFile);
+                if (landmarkFile.getSourceStamp() == mSourceStamp) {
+                    return landmarkFile;
+                }
+            } catch (IOException e) {
+                Logging.getLogger().warn(TAG,
+                        "Could not open landmark file, converting landmarks again", e);
+            }
+        }
+
+        // An incomplete read throws before anything is written, so a stale or missing file is
+        // left as it was and the conversion is tried again on the next open.
+        List<Place> places = mReader.readPlaces();
+
+        try {
+            File temporaryFile = new File(mFile.getPath() + ".tmp");
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(temporaryFile));
+            try {
+                LandmarkFile.write(places, mSourceStamp, out);
+            } finally {
+                out.close();
+            }
+
+            if (temporaryFile.renameTo(mFile)) {
+                return LandmarkFile.map(mFile);
+            }
+            Logging.getLogger().warn(TAG, "Could not rename landmark file", null);
+        } catch (IOException e) {
+            Logging.getLogger().error(TAG, "Could not write landmark file", e);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LandmarkFile.write(places, mSourceStamp, out);
+        return new LandmarkFile(ByteBuffer.wrap(out.toByteArray()));
+    }
+}
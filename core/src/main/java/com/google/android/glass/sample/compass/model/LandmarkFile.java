@@ -0,0 +1,281 @@
+package com.google.android.glass.sample.compass.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact binary representation of a collection of places, designed to be memory-mapped so
+ * that opening it takes constant time and the place data stays off the Java heap.
+ * <p>
+ * The file starts with a fixed-size header, followed by a number of tables of big-endian
+ * integers and a table of UTF-8 strings:
+ * <pre>
+ * int    magic ("LMK1")
+ * int    version
+ * long   source stamp (identifies the data the file was generated from)
+ * int    place count (n)
+ * int    cell count (c)
+ * int    string table length in bytes
+ * int[c]     keys of the non-empty grid cells, in ascending order
+ * int[c + 1] index of the first place in each cell
+ * int[n]     latitudes, in units of 1e-7 degrees
+ * int[n]     longitudes, in units of 1e-7 degrees
+ * int[2n + 1] offsets of the names and descriptions in the string table
+ * byte[]     string table
+ * </pre>
+ * Places are stored sorted by the {@link PlaceIndex} grid cell that contains them, so the cell
+ * tables double as a ready-made spatial index.
+ */
+public class LandmarkFile {
+
+    private static final int MAGIC = 0x4c4d4b31;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+
+    /** The scale of the fixed-point coordinates, which gives a resolution of about a centimeter. */
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer mBuffer;
+    private final long mSourceStamp;
+    private final int mSize;
+    private final int mCellCount;
+    private final int mCellKeysOffset;
+    private final int mCellStartsOffset;
+    private final int mLatitudesOffset;
+    private final int mLongitudesOffset;
+    private final int mStringOffsetsOffset;
+    private final int mStringsOffset;
+
+    /**
+     * Opens the landmark data contained in the specified buffer, which is typically a memory
+     * mapped file.
+     *
+     * @throws IOException if the buffer does not contain landmark data in a supported format
+     */
+    public LandmarkFile(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a landmark file");
+        }
+
+        mBuffer = buffer;
+        mSourceStamp = buffer.getLong(8);
+        mSize = buffer.getInt(16);
+        mCellCount = buffer.getInt(20);
+        int stringsLength = buffer.getInt(24);
+
+        mCellKeysOffset = HEADER_SIZE;
+        mCellStartsOffset = mCellKeysOffset + 4 * mCellCount;
+        mLatitudesOffset = mCellStartsOffset + 4 * (mCellCount + 1);
+        mLongitudesOffset = mLatitudesOffset + 4 * mSize;
+        mStringOffsetsOffset = mLongitudesOffset + 4 * mSize;
+        mStringsOffset = mStringOffsetsOffset + 4 * (2 * mSize + 1);
+
+        if (mSize < 0 || mCellCount < 0
+                || (long) mStringsOffset + stringsLength > buffer.capacity()) {
+            throw new IOException("Truncated landmark file");
+        }
+    }
+
+    /**
+     * Opens the landmark data in the specified file by mapping it into memory, which takes
+     * constant time regardless of the number of places.
+     *
+     * @throws IOException if the file cannot be read or is not a landmark file in a supported
+     *         format
+     */
+    public static LandmarkFile map(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            return new LandmarkFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            // The mapping remains valid after the channel is closed.
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the stamp of the data that this file was generated from, as passed to
+     * {@link #write(List, long, OutputStream)}.
+     */
+    public long getSourceStamp() {
+        return mSourceStamp;
+    }
+
+    /**
+     * Returns the number of places in the file.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public double getLatitude(int id) {
+        return toDegrees(mBuffer.getInt(mLatitudesOffset + 4 * id));
+    }
+
+    public double getLongitude(int id) {
+        return toDegrees(mBuffer.getInt(mLongitudesOffset + 4 * id));
+    }
+
+    public String getName(int id) {
+        return getString(2 * id);
+    }
+
+    public String getDescription(int id) {
+        return getString(2 * id + 1);
+    }
+
+    /**
+     * Returns a view of the latitudes of the places in fixed point, which
+     * {@link #toDegrees(int)} converts to degrees. Nothing is copied.
+     */
+    IntBuffer getFixedPointLatitudes() {
+        return getInts(mLatitudesOffset, mSize);
+    }
+
+    /**
+     * Returns a view of the longitudes of the places in fixed point, which
+     * {@link #toDegrees(int)} converts to degrees. Nothing is copied.
+     */
+    IntBuffer getFixedPointLongitudes() {
+        return getInts(mLongitudesOffset, mSize);
+    }
+
+    /**
+     * Returns a view of the keys of the non-empty grid cells, in ascending order.
+     */
+    IntBuffer getCellKeys() {
+        return getInts(mCellKeysOffset, mCellCount);
+    }
+
+    /**
+     * Returns a view of the index of the first place in each non-empty grid cell, followed by the
+     * number of places. The places in a cell are those from its start up to the start of the next
+     * cell.
+     */
+    IntBuffer getCellStarts() {
+        return getInts(mCellStartsOffset, mCellCount + 1);
+    }
+
+    /**
+     * Converts a coordinate stored in fixed point to degrees.
+     */
+    static double toDegrees(int fixedPoint) {
+        return fixedPoint / COORDINATE_SCALE;
+    }
+
+    private IntBuffer getInts(int offset, int count) {
+        // A duplicate has its own position and limit, so the views do not interfere with each
+        // other or with the absolute reads from mBuffer. Its byte order is big-endian, like the
+        // file.
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(offset);
+        buffer.limit(offset + 4 * count);
+        return buffer.slice().asIntBuffer();
+    }
+
+    private String getString(int index) {
+        int start = mBuffer.getInt(mStringOffsetsOffset + 4 * index);
+        int end = mBuffer.getInt(mStringOffsetsOffset + 4 * (index + 1));
+
+        byte[] bytes = new byte[end - start];
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(mStringsOffset + start);
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Writes the specified places to a stream in the landmark file format.
+     *
+     * @param places the places to write
+     * @param sourceStamp a value identifying the data that the places were read from, which can
+     *         be used later to tell whether the file is out of date
+     * @param out the stream to write to
+     */
+    public static void write(List<Place> places, long sourceStamp, OutputStream out)
+            throws IOException {
+        int size = places.size();
+
+        // Sort the places by grid cell, keeping the cell key in the high half of each entry and
+        // the original index in the low half.
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            Place place = places.get(i);
+            long key = PlaceIndex.getCellKey(place.getLatitude(), place.getLongitude());
+            order[i] = (key << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int cellCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || (order[i] >>> 32) != (order[i - 1] >>> 32)) {
+                cellCount++;
+            }
+        }
+
+        int[] cellKeys = new int[cellCount];
+        int[] cellStarts = new int[cellCount + 1];
+        int[] stringOffsets = new int[2 * size + 1];
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+
+        int cell = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || (order[i] >>> 32) != (order[i - 1] >>> 32)) {
+                cellKeys[cell] = (int) (order[i] >>> 32);
+                cellStarts[cell] = i;
+                cell++;
+            }
+
+            Place place = places.get((int) order[i]);
+            stringOffsets[2 * i] = strings.size();
+            strings.write(place.getName().getBytes(UTF_8));
+            stringOffsets[2 * i + 1] = strings.size();
+            strings.write(place.getDescription().getBytes(UTF_8));
+        }
+        cellStarts[cellCount] = size;
+        stringOffsets[2 * size] = strings.size();
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(sourceStamp);
+        data.writeInt(size);
+        data.writeInt(cellCount);
+        data.writeInt(strings.size());
+        writeInts(data, cellKeys);
+        writeInts(data, cellStarts);
+        for (int i = 0; i < size; i++) {
+            data.writeInt(toFixedPoint(places.get((int) order[i]).getLatitude()));
+        }
+        for (int i = 0; i < size; i++) {
+            data.writeInt(toFixedPoint(places.get((int) order[i]).getLongitude()));
+        }
+        writeInts(data, stringOffsets);
+        strings.writeTo(data);
+        data.flush();
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int toFixedPoint(double degrees) {
+        return (int) Math.round(degrees * COORDINATE_SCALE);
+    }
+}
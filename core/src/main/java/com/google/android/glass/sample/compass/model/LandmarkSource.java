@@ -0,0 +1,18 @@
+package com.google.android.glass.sample.compass.model;
+
+import java.io.IOException;
+
+/**
+ * Provides the landmark data for {@link Landmarks#load(LandmarkSource)}, for example from a file
+ * bundled with an application or generated on a server.
+ */
+public interface LandmarkSource {
+
+    /**
+     * Opens the landmark data. This is called on the thread that loads the landmarks and may take
+     * a long time.
+     *
+     * @throws IOException if the data cannot be read
+     */
+    LandmarkFile open() throws IOException;
+}
@@ -0,0 +1,138 @@
+package com.google.android.glass.sample.compass.model;
+
+import com.google.android.glass.sample.compass.util.Logging;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class provides access to a list of landmarks that will appear on the compass when the user
+ * is near them.
+ * <p>
+ * The landmarks are read from a {@link LandmarkSource} (or directly from a {@link LandmarkFile})
+ * by {@link #load(LandmarkSource)}, usually on a background thread; until loading has finished
+ * the collection behaves as if it were empty. Use {@link #setOnLoadedListener(OnLoadedListener)}
+ * to find out when the landmarks become available.
+ * <p>
+ * This class does not depend on Android, so that the same code can run on a desktop JVM or a
+ * server. Where the landmarks come from is up to the caller.
+ */
+public class Landmarks {
+
+    private static final String TAG = Landmarks.class.getSimpleName();
+
+    /**
+     * The threshold used to display a landmark on the compass.
+     */
+    static final double MAX_DISTANCE_KM = 10;
+
+    /**
+     * Receives a notification once the landmarks have been loaded.
+     */
+    public interface OnLoadedListener {
+
+        /**
+         * Called once the landmarks have been loaded. This is called on the thread that loaded
+         * them, or on the thread that registered the listener if loading had already finished.
+         */
+        void onLandmarksLoaded(Landmarks landmarks);
+    }
+
+    /**
+     * The spatial index used to find the landmarks near a location. This is null until
+     * loading has finished, or if it failed.
+     */
+    private volatile PlaceIndex mIndex;
+
+    private boolean mLoaded;
+    private OnLoadedListener mListener;
+
+    /**
+     * Opens the specified source and indexes its landmarks, as {@link #load(LandmarkFile)} does.
+     * If the source cannot be opened, the error is logged and the collection is left empty, but
+     * it still counts as loaded.
+     */
+    public void load(LandmarkSource source) {
+        LandmarkFile file;
+        try {
+            file = source.open();
+        } catch (IOException e) {
+            Logging.getLogger().error(TAG, "Could not load landmarks", e);
+            onLoaded(null);
+            return;
+        }
+        load(file);
+    }
+
+    /**
+     * Indexes the landmarks in the specified file and makes them available. The index is built
+     * on the calling thread, which takes time proportional to the number of landmarks, so this is
+     * usually called on a background thread.
+     */
+    public void load(LandmarkFile file) {
+        onLoaded(new PlaceIndex(new PlaceStore(file)));
+    }
+
+    /**
+     * Sets the listener that is notified once the landmarks have been loaded. If they already
+     * have been, the listener is notified immediately.
+     */
+    public void setOnLoadedListener(OnLoadedListener listener) {
+        boolean loaded;
+        synchronized (this) {
+            mListener = listener;
+            loaded = mLoaded;
+        }
+
+        if (loaded && listener != null) {
+            listener.onLandmarksLoaded(this);
+        }
+    }
+
+    /**
+     * Returns true if the landmarks have finished loading.
+     */
+    public synchronized boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Gets a list of landmarks that are within ten kilometers of the specified coordinates. This
+     * function will never return null; if there are no locations within that threshold, then an
+     * empty list will be returned.
+     */
+    public List<Place> getNearbyLandmarks(double latitude, double longitude) {
+        ArrayList<Place> nearbyPlaces = new ArrayList<Place>();
+        findWithin(latitude, longitude, MAX_DISTANCE_KM, nearbyPlaces);
+        return nearbyPlaces;
+    }
+
+    /**
+     * Adds to {@code result} every landmark within the specified distance of the specified
+     * coordinates.
+     */
+    void findWithin(double latitude, double longitude, double radiusKm, List<Place> result) {
+        PlaceIndex index = mIndex;
+        if (index != null) {
+            index.findWithin(latitude, longitude, radiusKm, result);
+        }
+    }
+
+    /**
+     * Publishes the loaded index, which is null if loading failed, and notifies the listener, if
+     * there is one.
+     */
+    private void onLoaded(PlaceIndex index) {
+        OnLoadedListener listener;
+        synchronized (this) {
+            mIndex = index;
+            mLoaded = true;
+            listener = mListener;
+        }
+
+        if (listener != null) {
+            listener.onLandmarksLoaded(this);
+        }
+    }
+}
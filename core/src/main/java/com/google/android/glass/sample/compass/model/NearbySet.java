@@ -0,0 +1,243 @@
+package com.google.android.glass.sample.compass.model;
+
+import com.google.android.glass.sample.compass.util.LocalFrame;
+import com.google.android.glass.sample.compass.util.MathUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Incrementally maintains the set of landmarks that are near the user as they move.
+ * <p>
+ * A place enters the set when it comes within {@link Landmarks#MAX_DISTANCE_KM} of the user and
+ * leaves it only once it is more than {@link #HYSTERESIS_KM} beyond that radius, so that places
+ * sitting right on the boundary do not flicker in and out because of GPS noise.
+ * <p>
+ * Rather than querying the whole neighbourhood on every fix, the set remembers the places
+ * within a slightly larger "horizon" of a reference position, sorted by their distance from it.
+ * When the user has moved {@code d} kilometers from the reference position, only places whose
+ * reference distance lies within {@code d} of the boundary can have changed state, and those are
+ * found with a binary search. The horizon is only queried again once the user has moved further
+ * than {@link #HORIZON_MARGIN_KM} from the reference position.
+ */
+public class NearbySet {
+
+    /** How far beyond the entry radius a place has to be before it leaves the set. */
+    private static final double HYSTERESIS_KM = 0.25;
+
+    /** How far the user can move before the tracked neighbourhood is queried again. */
+    private static final double HORIZON_MARGIN_KM = 1.0;
+
+    private static final double ENTER_RADIUS_KM = Landmarks.MAX_DISTANCE_KM;
+    private static final double EXIT_RADIUS_KM = ENTER_RADIUS_KM + HYSTERESIS_KM;
+    private static final double HORIZON_KM = ENTER_RADIUS_KM + HORIZON_MARGIN_KM;
+
+    /**
+     * The changes to the set produced by a call to {@link NearbySet#update(double, double)}.
+     */
+    public static class Delta {
+
+        private final List<Place> mEntered;
+        private final List<Place> mExited;
+
+        private Delta(List<Place> entered, List<Place> exited) {
+            mEntered = Collections.unmodifiableList(entered);
+            mExited = Collections.unmodifiableList(exited);
+        }
+
+        /** Returns the places that were added to the set. */
+        public List<Place> getEntered() {
+            return mEntered;
+        }
+
+        /** Returns the places that were removed from the set. */
+        public List<Place> getExited() {
+            return mExited;
+        }
+
+        /** Returns true if the update did not change the set. */
+        public boolean isEmpty() {
+            return mEntered.isEmpty() && mExited.isEmpty();
+        }
+    }
+
+    /** A place within the horizon, with its distance from the reference position. */
+    private static class Tracked {
+        final Place place;
+        final float referenceDistance;
+        boolean member;
+
+        Tracked(Place place, float referenceDistance) {
+            this.place = place;
+            this.referenceDistance = referenceDistance;
+        }
+    }
+
+    private static final Comparator<Tracked> BY_REFERENCE_DISTANCE = new Comparator<Tracked>() {
+        @Override
+        public int compare(Tracked lhs, Tracked rhs) {
+            return Float.compare(lhs.referenceDistance, rhs.referenceDistance);
+        }
+    };
+
+    private final Landmarks mLandmarks;
+    private final Set<Place> mMembers;
+
+    private Tracked[] mTracked;
+    private boolean mHasReference;
+    private double mReferenceLatitude;
+    private double mReferenceLongitude;
+
+    /** The range of {@link #mTracked} visited since the horizon was last queried. */
+    private int mVisitedFrom;
+    private int mVisitedTo;
+
+    public NearbySet(Landmarks landmarks) {
+        mLandmarks = landmarks;
+        mMembers = new LinkedHashSet<Place>();
+        mTracked = new Tracked[0];
+    }
+
+    /**
+     * Returns the places currently in the set.
+     */
+    public Set<Place> getPlaces() {
+        return Collections.unmodifiableSet(mMembers);
+    }
+
+    /**
+     * Forgets the tracked neighbourhood, so that the next update queries the landmarks again.
+     * This must be called if the landmarks change.
+     */
+    public void invalidate() {
+        mHasReference = false;
+    }
+
+    /**
+     * Moves the user to the specified coordinates and returns the places that entered and left
+     * the set as a result.
+     */
+    public Delta update(double latitude, double longitude) {
+        List<Place> entered = new ArrayList<Place>();
+        List<Place> exited = new ArrayList<Place>();
+
+        double moved = mHasReference ? MathUtils.getDistance(mReferenceLatitude,
+                mReferenceLongitude, latitude, longitude) : Double.POSITIVE_INFINITY;
+
+        if (moved > HORIZON_MARGIN_KM) {
+            requery(latitude, longitude, entered, exited);
+        } else {
+            // Places whose reference distance is further than "moved" from both radii cannot have
+            // crossed them, so only the band in between needs an exact distance.
+            int from = lowerBound(ENTER_RADIUS_KM - moved);
+            int to = lowerBound(EXIT_RADIUS_KM + moved);
+            LocalFrame frame = new LocalFrame(latitude, longitude);
+
+            for (int i = Math.min(from, mVisitedFrom); i < Math.max(to, mVisitedTo); i++) {
+                Tracked tracked = mTracked[i];
+                boolean member;
+                if (i < from) {
+                    member = true;
+                } else if (i >= to) {
+                    member = false;
+                } else {
+                    float distance = frame.getDistance(tracked.place.getLatitude(),
+                            tracked.place.getLongitude());
+                    member = tracked.member ? distance <= EXIT_RADIUS_KM
+                            : distance <= ENTER_RADIUS_KM;
+                }
+                setMember(tracked, member, entered, exited);
+            }
+
+            mVisitedFrom = Math.min(from, mVisitedFrom);
+            mVisitedTo = Math.max(to, mVisitedTo);
+        }
+
+        return new Delta(entered, exited);
+    }
+
+    /**
+     * Queries the horizon around the specified coordinates, which become the new reference
+     * position.
+     */
+    private void requery(double latitude, double longitude, List<Place> entered,
+            List<Place> exited) {
+        List<Place> places = new ArrayList<Place>();
+        mLandmarks.findWithin(latitude, longitude, HORIZON_KM, places);
+
+        LocalFrame frame = new LocalFrame(latitude, longitude);
+        Tracked[] tracked = new Tracked[places.size()];
+        for (int i = 0; i < tracked.length; i++) {
+            Place place = places.get(i);
+            tracked[i] = new Tracked(place,
+                    frame.getDistance(place.getLatitude(), place.getLongitude()));
+        }
+        Arrays.sort(tracked, BY_REFERENCE_DISTANCE);
+
+        Set<Place> previousMembers = new HashSet<Place>(mMembers);
+        mMembers.clear();
+
+        for (Tracked current : tracked) {
+            boolean wasMember = previousMembers.remove(current.place);
+            current.member = wasMember ? current.referenceDistance <= EXIT_RADIUS_KM
+                    : current.referenceDistance <= ENTER_RADIUS_KM;
+
+            if (current.member) {
+                mMembers.add(current.place);
+                if (!wasMember) {
+                    entered.add(current.place);
+                }
+            } else if (wasMember) {
+                exited.add(current.place);
+            }
+        }
+
+        // Whatever is left was beyond the horizon.
+        exited.addAll(previousMembers);
+
+        mTracked = tracked;
+        mHasReference = true;
+        mReferenceLatitude = latitude;
+        mReferenceLongitude = longitude;
+        mVisitedFrom = tracked.length;
+        mVisitedTo = 0;
+    }
+
+    private void setMember(Tracked tracked, boolean member, List<Place> entered,
+            List<Place> exited) {
+        if (member != tracked.member) {
+            tracked.member = member;
+            if (member) {
+                mMembers.add(tracked.place);
+                entered.add(tracked.place);
+            } else {
+                mMembers.remove(tracked.place);
+                exited.add(tracked.place);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first tracked place whose reference distance is greater than the
+     * specified distance.
+     */
+    private int lowerBound(double distance) {
+        int low = 0;
+        int high = mTracked.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mTracked[middle].referenceDistance <= distance) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
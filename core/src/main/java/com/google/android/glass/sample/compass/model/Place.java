@@ -0,0 +1,75 @@
+package com.google.android.glass.sample.compass.model;
+
+/**
+ * This class represents a point of interest that has geographical coordinates (latitude and
+ * longitude) and a name that is displayed to the user.
+ * <p>
+ * Places that come from a {@link PlaceStore} read their name and description from the store the
+ * first time they are requested, and are equal to every other {@code Place} for the same entry
+ * of the same store.
+ */
+public class Place {
+
+    private final double mLatitude;
+    private final double mLongitude;
+    private final PlaceStore mStore;
+    private final int mId;
+    private String mName;
+    private String description;
+
+    public Place(double latitude, double longitude, String name, String description) {
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mStore = null;
+        mId = -1;
+        mName = name;
+        this.description = description;
+    }
+
+    Place(PlaceStore store, int id) {
+        mLatitude = store.getLatitude(id);
+        mLongitude = store.getLongitude(id);
+        mStore = store;
+        mId = id;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public String getName() {
+        // Strings are immutable, so a racing thread at worst decodes the name a second time.
+        if (mName == null && mStore != null) {
+            mName = mStore.getName(mId);
+        }
+        return mName;
+    }
+
+    public String getDescription() {
+        if (description == null && mStore != null) {
+            description = mStore.getDescription(mId);
+        }
+        return description;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (mStore == null || !(o instanceof Place)) {
+            return false;
+        }
+        Place other = (Place) o;
+        return mStore == other.mStore && mId == other.mId;
+    }
+
+    @Override
+    public int hashCode() {
+        return (mStore == null) ? System.identityHashCode(this) : mId;
+    }
+}
@@ -0,0 +1,192 @@
+package com.google.android.glass.sample.compass.model;
+
+import com.google.android.glass.sample.compass.util.MathUtils;
+
+import java.nio.IntBuffer;
+import java.util.List;
+
+/**
+ * A spatial index over the places in a {@link PlaceStore}. The surface of the Earth is divided
+ * into a grid of fixed-size latitude/longitude cells, and the store keeps its places grouped by
+ * the cell that contains them. A radius query only visits the cells overlapping the bounding box
+ * of the search circle, rejects places outside that box with cheap comparisons, and computes the
+ * exact great circle distance only for the remaining candidates, whose coordinates are the only
+ * ones decoded in full. The cost of a query therefore
+ * depends on the number of places around the requested point rather than on the size of the
+ * whole catalogue.
+ */
+public class PlaceIndex {
+
+    /** The size of one grid cell, in degrees of latitude and longitude. */
+    private static final double CELL_SIZE_DEGREES = 0.1;
+
+    /** The number of cells along a meridian and along a parallel. */
+    private static final int LATITUDE_CELLS = (int) Math.round(180.0 / CELL_SIZE_DEGREES);
+    private static final int LONGITUDE_CELLS = (int) Math.round(360.0 / CELL_SIZE_DEGREES);
+
+    /** The length of one degree of latitude (and of longitude at the equator), in kilometers. */
+    private static final double KM_PER_DEGREE = Math.toRadians(MathUtils.EARTH_RADIUS_KM);
+
+    private final PlaceStore mStore;
+
+    /**
+     * Creates an index over the places in the specified store. This does not do any work, since
+     * the store already contains the grid.
+     */
+    public PlaceIndex(PlaceStore store) {
+        mStore = store;
+    }
+
+    /**
+     * Returns the number of places in the index.
+     */
+    public int size() {
+        return mStore.size();
+    }
+
+    /**
+     * Adds to {@code result} every place whose great circle distance from the specified
+     * coordinates is at most {@code radiusKm}.
+     */
+    public void findWithin(double latitude, double longitude, double radiusKm,
+            List<Place> result) {
+        // Compute the bounding box of the search circle. Near the poles (or for very large radii)
+        // the box covers every longitude, in which case only the latitude bounds are useful.
+        double deltaLatitude = radiusKm / KM_PER_DEGREE;
+        double minLatitude = Math.max(-90.0, latitude - deltaLatitude);
+        double maxLatitude = Math.min(90.0, latitude + deltaLatitude);
+
+        double cosLatitude = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude),
+                Math.abs(maxLatitude))));
+        double deltaLongitude = (cosLatitude > 0) ? radiusKm / (KM_PER_DEGREE * cosLatitude)
+                : Double.POSITIVE_INFINITY;
+        boolean allLongitudes = deltaLongitude >= 180.0;
+
+        // The haversine formula computes d = 2 R asin(sqrt(h)), so d <= radius exactly when
+        // h <= sin^2(radius / 2R). Comparing h directly saves the inverse trigonometry.
+        double maxHaversine = Math.sin(Math.min(Math.PI / 2,
+                radiusKm / (2 * MathUtils.EARTH_RADIUS_KM)));
+        maxHaversine *= maxHaversine;
+        double latitudeRadians = Math.toRadians(latitude);
+        double cosLatitudeRadians = Math.cos(latitudeRadians);
+        double sinLatitudeRadians = Math.sin(latitudeRadians);
+
+        IntBuffer cellStarts = mStore.mCellStarts;
+
+        int minLatitudeCell = getLatitudeCell(minLatitude);
+        int maxLatitudeCell = getLatitudeCell(maxLatitude);
+        int minLongitudeCell;
+        int longitudeCellCount;
+        if (allLongitudes) {
+            minLongitudeCell = 0;
+            longitudeCellCount = LONGITUDE_CELLS;
+        } else {
+            minLongitudeCell = getLongitudeCell(longitude - deltaLongitude);
+            int maxLongitudeCell = getLongitudeCell(longitude + deltaLongitude);
+            longitudeCellCount =
+                    MathUtils.mod(maxLongitudeCell - minLongitudeCell, LONGITUDE_CELLS) + 1;
+        }
+
+        for (int latitudeCell = minLatitudeCell; latitudeCell <= maxLatitudeCell;
+                latitudeCell++) {
+            for (int i = 0; i < longitudeCellCount; i++) {
+                int longitudeCell = (minLongitudeCell + i) % LONGITUDE_CELLS;
+                int cell = findCell(getCellKey(latitudeCell, longitudeCell));
+                if (cell < 0) {
+                    continue;
+                }
+
+                int end = cellStarts.get(cell + 1);
+                for (int id = cellStarts.get(cell); id < end; id++) {
+                    double placeLatitude = mStore.getLatitude(id);
+                    double placeLongitude = mStore.getLongitude(id);
+
+                    // Bounding box prefilter; the longitude comparison has to take the
+                    // antimeridian into account.
+                    if (placeLatitude < minLatitude || placeLatitude > maxLatitude) {
+                        continue;
+                    }
+                    if (!allLongitudes) {
+                        double longitudeDifference = Math.abs(placeLongitude - longitude);
+                        if (longitudeDifference > 180.0) {
+                            longitudeDifference = 360.0 - longitudeDifference;
+                        }
+                        if (longitudeDifference > deltaLongitude) {
+                            continue;
+                        }
+                    }
+
+                    double sinHalfDeltaLatitude =
+                            Math.sin((Math.toRadians(placeLatitude) - latitudeRadians) / 2);
+                    double sinHalfDeltaLongitude =
+                            Math.sin(Math.toRadians(placeLongitude - longitude) / 2);
+                    double haversine = sinHalfDeltaLatitude * sinHalfDeltaLatitude
+                            + sinHalfDeltaLongitude * sinHalfDeltaLongitude
+                            * cosLatitudeRadians * getCosLatitude(cosLatitudeRadians,
+                                    sinLatitudeRadians, sinHalfDeltaLatitude);
+
+                    if (haversine <= maxHaversine) {
+                        result.add(mStore.getPlace(id));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cosine of a place's latitude, given the cosine and sine of the query latitude
+     * and the sine of half the difference between the two, which the haversine formula computes
+     * anyway. By the angle addition formula this takes a square root rather than another cosine,
+     * so the store does not have to keep the cosine of every place.
+     */
+    private static double getCosLatitude(double cosLatitude, double sinLatitude,
+            double sinHalfDeltaLatitude) {
+        double cosDeltaLatitude = 1 - 2 * sinHalfDeltaLatitude * sinHalfDeltaLatitude;
+        double sinDeltaLatitude = 2 * sinHalfDeltaLatitude
+                * Math.sqrt(1 - sinHalfDeltaLatitude * sinHalfDeltaLatitude);
+        return cosLatitude * cosDeltaLatitude - sinLatitude * sinDeltaLatitude;
+    }
+
+    /**
+     * Returns the position of the cell with the specified key among the non-empty cells of the
+     * store, or a negative value if the cell is empty.
+     */
+    private int findCell(int key) {
+        IntBuffer keys = mStore.mCellKeys;
+        int low = 0;
+        int high = keys.limit() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleKey = keys.get(middle);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the key of the grid cell containing the specified coordinates.
+     */
+    static int getCellKey(double latitude, double longitude) {
+        return getCellKey(getLatitudeCell(latitude), getLongitudeCell(longitude));
+    }
+
+    private static int getLatitudeCell(double latitude) {
+        int cell = (int) Math.floor((latitude + 90.0) / CELL_SIZE_DEGREES);
+        return Math.max(0, Math.min(LATITUDE_CELLS - 1, cell));
+    }
+
+    private static int getLongitudeCell(double longitude) {
+        return MathUtils.mod((int) Math.floor((longitude + 180.0) / CELL_SIZE_DEGREES),
+                LONGITUDE_CELLS);
+    }
+
+    private static int getCellKey(int latitudeCell, int longitudeCell) {
+        return latitudeCell * LONGITUDE_CELLS + longitudeCell;
+    }
+}
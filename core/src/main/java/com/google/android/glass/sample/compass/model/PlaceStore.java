@@ -0,0 +1,73 @@
+package com.google.android.glass.sample.compass.model;
+
+import java.nio.IntBuffer;
+
+/**
+ * Gives {@link PlaceIndex} access to the places of a {@link LandmarkFile} as parallel arrays of
+ * primitives ("struct of arrays"), so that the distance filter walks contiguous memory instead of
+ * following references to objects scattered across the heap.
+ * <p>
+ * The arrays are views of the file's own fixed-point tables, decoded on access, so creating a
+ * store takes constant time and copies nothing onto the Java heap, however many places the file
+ * holds. Names and descriptions are decoded only when a {@link Place} returned by
+ * {@link #getPlace(int)} is asked for them, which in practice means only for the places that are
+ * actually displayed.
+ */
+public class PlaceStore {
+
+    private final LandmarkFile mFile;
+    private final int mSize;
+
+    /** The coordinates of each place, in the file's fixed point. */
+    final IntBuffer mLatitudes;
+    final IntBuffer mLongitudes;
+
+    /** The keys of the non-empty grid cells, in ascending order. */
+    final IntBuffer mCellKeys;
+
+    /**
+     * The index of the first place in each non-empty grid cell, followed by the number of
+     * places.
+     */
+    final IntBuffer mCellStarts;
+
+    public PlaceStore(LandmarkFile file) {
+        mFile = file;
+        mSize = file.size();
+        mLatitudes = file.getFixedPointLatitudes();
+        mLongitudes = file.getFixedPointLongitudes();
+        mCellKeys = file.getCellKeys();
+        mCellStarts = file.getCellStarts();
+    }
+
+    /**
+     * Returns the number of places in the store.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public double getLatitude(int id) {
+        return LandmarkFile.toDegrees(mLatitudes.get(id));
+    }
+
+    public double getLongitude(int id) {
+        return LandmarkFile.toDegrees(mLongitudes.get(id));
+    }
+
+    public String getName(int id) {
+        return mFile.getName(id);
+    }
+
+    public String getDescription(int id) {
+        return mFile.getDescription(id);
+    }
+
+    /**
+     * Returns a {@link Place} for the place with the specified index. Its name and description
+     * are read from the store the first time they are requested.
+     */
+    public Place getPlace(int id) {
+        return new Place(this, id);
+    }
+}
@@ -0,0 +1,159 @@
+package com.google.android.glass.sample.compass.model;
+
+import com.google.android.glass.sample.compass.util.LocalFrame;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Picks a bounded number of places out of a larger set, the nearest ones in each of a number of
+ * equal sectors of bearings around the user, so that a dense cluster on one side does not crowd
+ * out every other direction.
+ * <p>
+ * A place that is already selected keeps its slot until another place is nearer than it by more
+ * than {@link #STICKY_FACTOR}, so that places at the edge of the selection do not flicker in and
+ * out as the user moves. The selection is rebuilt on every update, but only replaced when the
+ * places in it change.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class SectorSelection {
+
+    /**
+     * The factor applied to the distance of a place that is already selected when it competes
+     * for a slot, which gives it an advantage of ten percent of its distance.
+     */
+    private static final float STICKY_FACTOR = 0.9f;
+
+    private final int mSectorCount;
+    private final int mPlacesPerSector;
+
+    /** The places picked for each sector, ordered by increasing key, and their keys. */
+    private final Place[][] mSectorPlaces;
+    private final float[][] mSectorKeys;
+    private final int[] mSectorSizes;
+
+    private Set<Place> mSelected = Collections.emptySet();
+    private List<Place> mSelection = Collections.emptyList();
+
+    /**
+     * Creates an empty selection.
+     *
+     * @param sectorCount the number of sectors the bearings are divided into
+     * @param placesPerSector the most places selected in each sector
+     */
+    public SectorSelection(int sectorCount, int placesPerSector) {
+        mSectorCount = sectorCount;
+        mPlacesPerSector = placesPerSector;
+        mSectorPlaces = new Place[sectorCount][placesPerSector];
+        mSectorKeys = new float[sectorCount][placesPerSector];
+        mSectorSizes = new int[sectorCount];
+    }
+
+    /**
+     * Returns the most places that can be selected.
+     */
+    public int getCapacity() {
+        return mSectorCount * mPlacesPerSector;
+    }
+
+    /**
+     * Returns the places currently selected, as an immutable list ordered by sector and then by
+     * distance. The same list is returned until an update changes the selection.
+     */
+    public List<Place> getSelection() {
+        return mSelection;
+    }
+
+    /**
+     * Forgets the current selection, so that the next update starts from scratch.
+     */
+    public void clear() {
+        mSelected = Collections.emptySet();
+        mSelection = Collections.emptyList();
+    }
+
+    /**
+     * Selects the nearest of the specified places in each sector around the specified
+     * coordinates, which the places are expected to be near (see {@link LocalFrame}).
+     *
+     * @return true if the selection changed
+     */
+    public boolean update(double latitude, double longitude, Collection<Place> places) {
+        LocalFrame frame = new LocalFrame(latitude, longitude);
+        float sectorWidth = 360.0f / mSectorCount;
+        for (int sector = 0; sector < mSectorCount; sector++) {
+            mSectorSizes[sector] = 0;
+        }
+
+        for (Place place : places) {
+            float key = frame.getDistance(place.getLatitude(), place.getLongitude());
+            if (mSelected.contains(place)) {
+                key *= STICKY_FACTOR;
+            }
+            float bearing = frame.getBearing(place.getLatitude(), place.getLongitude());
+            int sector = Math.min((int) (bearing / sectorWidth), mSectorCount - 1);
+            insert(sector, place, key);
+        }
+
+        int count = 0;
+        boolean changed = false;
+        for (int sector = 0; sector < mSectorCount; sector++) {
+            for (int i = 0; i < mSectorSizes[sector]; i++) {
+                changed |= !mSelected.contains(mSectorPlaces[sector][i]);
+            }
+            count += mSectorSizes[sector];
+        }
+        changed |= (count != mSelected.size());
+
+        if (changed) {
+            List<Place> selection = new ArrayList<Place>(count);
+            for (int sector = 0; sector < mSectorCount; sector++) {
+                for (int i = 0; i < mSectorSizes[sector]; i++) {
+                    selection.add(mSectorPlaces[sector][i]);
+                }
+            }
+            mSelected = new HashSet<Place>(selection);
+            mSelection = Collections.unmodifiableList(selection);
+        }
+
+        // The slots do not keep the places alive between updates.
+        for (int sector = 0; sector < mSectorCount; sector++) {
+            for (int i = 0; i < mSectorSizes[sector]; i++) {
+                mSectorPlaces[sector][i] = null;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Inserts a place into the sorted slots of a sector, dropping the one with the largest key if
+     * they are full.
+     */
+    private void insert(int sector, Place place, float key) {
+        Place[] sectorPlaces = mSectorPlaces[sector];
+        float[] sectorKeys = mSectorKeys[sector];
+        int size = mSectorSizes[sector];
+
+        if (size == mPlacesPerSector) {
+            if (key >= sectorKeys[size - 1]) {
+                return;
+            }
+            size--;
+        }
+
+        int i = size;
+        while (i > 0 && sectorKeys[i - 1] > key) {
+            sectorPlaces[i] = sectorPlaces[i - 1];
+            sectorKeys[i] = sectorKeys[i - 1];
+            i--;
+        }
+        sectorPlaces[i] = place;
+        sectorKeys[i] = key;
+        mSectorSizes[sector] = size + 1;
+    }
+}
@@ -0,0 +1,103 @@
+package com.google.android.glass.sample.compass.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Smooths the heading reported by the rotation vector sensor and estimates how fast it is
+ * changing, so that the compass can be drawn at the heading predicted for the moment a frame is
+ * shown rather than the one measured some time before.
+ * <p>
+ * This is an alpha-beta filter (a steady-state Kalman filter for a constant angular velocity
+ * model) that works on angles: the difference between a measurement and the prediction is
+ * always taken the short way around the circle, so crossing north does not disturb it.
+ */
+public class HeadingFilter {
+
+    /** How much of the difference between a measurement and the prediction goes to the heading. */
+    private static final float ALPHA = 0.5f;
+
+    /** How much of that difference, per second, goes to the angular velocity. */
+    private static final float BETA = 0.1f;
+
+    /**
+     * Differences larger than this are treated as a jump in the sensor output (for example, after
+     * calibration) rather than as movement. The heading still converges to it over a few samples,
+     * but the angular velocity is reset so that the jump is not extrapolated.
+     */
+    private static final float JUMP_DEGREES = 45.0f;
+
+    /** If no measurement arrives for this long, the filter starts over. */
+    private static final long MAX_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /**
+     * The longest time the heading is extrapolated for. Beyond this, a constant angular velocity
+     * is no longer a good guess and the prediction would overshoot.
+     */
+    public static final long MAX_PREDICTION_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private boolean initialized;
+    private float heading;
+    private float velocity;
+    private long timestampNanos;
+
+    /**
+     * Updates the estimate with a new measurement.
+     *
+     * @param measuredHeading the measured heading, in degrees
+     * @param timestampNanos the time of the measurement, in nanoseconds
+     */
+    public void update(float measuredHeading, long timestampNanos) {
+        long elapsedNanos = timestampNanos - this.timestampNanos;
+        if (!initialized || elapsedNanos <= 0 || elapsedNanos > MAX_GAP_NANOS) {
+            heading = MathUtils.mod(measuredHeading, 360.0f);
+            velocity = 0;
+            this.timestampNanos = timestampNanos;
+            initialized = true;
+            return;
+        }
+
+        float elapsedSeconds = elapsedNanos / (float) TimeUnit.SECONDS.toNanos(1);
+        float predicted = heading + velocity * elapsedSeconds;
+        float residual = MathUtils.mod(measuredHeading - predicted + 180.0f, 360.0f) - 180.0f;
+
+        heading = MathUtils.mod(predicted + ALPHA * residual, 360.0f);
+        if (Math.abs(residual) > JUMP_DEGREES) {
+            velocity = 0;
+        } else {
+            velocity += BETA * residual / elapsedSeconds;
+        }
+        this.timestampNanos = timestampNanos;
+    }
+
+    /**
+     * Forgets the current estimate, so that the next measurement is taken as is.
+     */
+    public void reset() {
+        initialized = false;
+    }
+
+    /** Returns the filtered heading, in degrees between 0 and 360. */
+    public float getHeading() {
+        return heading;
+    }
+
+    /** Returns the estimated angular velocity, in degrees per second. */
+    public float getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * Extrapolates a heading to a later time, assuming that it keeps changing at the same rate.
+     *
+     * @param heading the heading, in degrees
+     * @param velocity the angular velocity, in degrees per second
+     * @param elapsedNanos the time to extrapolate for, which is limited to
+     *         {@link #MAX_PREDICTION_NANOS}
+     * @return the predicted heading, in degrees between 0 and 360
+     */
+    public static float predict(float heading, float velocity, long elapsedNanos) {
+        long clampedNanos = Math.max(0, Math.min(elapsedNanos, MAX_PREDICTION_NANOS));
+        float elapsedSeconds = clampedNanos / (float) TimeUnit.SECONDS.toNanos(1);
+        return MathUtils.mod(heading + velocity * elapsedSeconds, 360.0f);
+    }
+}
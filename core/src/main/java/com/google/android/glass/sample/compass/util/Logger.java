@@ -0,0 +1,27 @@
+package com.google.android.glass.sample.compass.util;
+
+/**
+ * Receives the log messages of the model and util classes, so that an application can route them
+ * to the platform's log. Install one with {@link Logging#setLogger(Logger)}.
+ */
+public interface Logger {
+
+    /**
+     * Logs an informational message.
+     */
+    void info(String tag, String message);
+
+    /**
+     * Logs a problem that the caller recovered from.
+     *
+     * @param throwable the cause of the problem, or null
+     */
+    void warn(String tag, String message, Throwable throwable);
+
+    /**
+     * Logs a problem that caused an operation to fail.
+     *
+     * @param throwable the cause of the problem, or null
+     */
+    void error(String tag, String message, Throwable throwable);
+}
@@ -0,0 +1,53 @@
+package com.google.android.glass.sample.compass.util;
+
+import java.util.logging.Level;
+
+/**
+ * Holds the {@link Logger} used by the model and util classes. Unless another one is installed,
+ * messages go to {@link java.util.logging}, which suits a desktop JVM or a server.
+ */
+public final class Logging {
+
+    private static volatile Logger logger = new JavaLogger();
+
+    private Logging() {
+    }
+
+    /**
+     * Returns the logger that messages should be sent to.
+     */
+    public static Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Installs the logger that messages are sent to from now on.
+     */
+    public static void setLogger(Logger newLogger) {
+        if (newLogger == null) {
+            throw new NullPointerException("newLogger");
+        }
+        logger = newLogger;
+    }
+
+    /**
+     * Sends messages to {@link java.util.logging}, with the tag as the logger name.
+     */
+    private static class JavaLogger implements Logger {
+
+        @Override
+        public void info(String tag, String message) {
+            java.util.logging.Logger.getLogger(tag).log(Level.INFO, message);
+        }
+
+        @Override
+        public void warn(String tag, String message, Throwable throwable) {
+            java.util.logging.Logger.getLogger(tag).log(Level.WARNING, message, throwable);
+        }
+
+        @Override
+        public void error(String tag, String message, Throwable throwable) {
+            java.util.logging.Logger.getLogger(tag).log(Level.SEVERE, message, throwable);
+        }
+    }
+}
@@ -9,7 +9,7 @@ public class MathUtils {
     private static final int NUMBER_OF_HALF_WINDS = 16;
 
     /** The Earth's radius, in kilometers. */
-    private static final double EARTH_RADIUS_KM = 6371.0;
+    public static final double EARTH_RADIUS_KM = 6371.0;
 
     /**
      * Calculates {@code a mod b} in a way that respects negative values (for example,
@@ -101,7 +101,49 @@ public class MathUtils {
         return (float) (EARTH_RADIUS_KM * c);
     }
 
+    /**
+     * Approximates {@code Math.atan2(y, x)} with a polynomial, which is several times faster. The
+     * result is within 2e-5 radians (about 0.001 degrees) of the exact value.
+     *
+     * @param y the ordinate
+     * @param x the abscissa
+     * @return the angle of the point (x, y), in radians between -pi and pi
+     */
+    public static double fastAtan2(double y, double x) {
+        double absX = Math.abs(x);
+        double absY = Math.abs(y);
+        if (absX == 0 && absY == 0) {
+            return 0;
+        }
+
+        // Reduce to an angle between 0 and 45 degrees, where a minimax polynomial for atan(z)
+        // is accurate, and then undo the reduction.
+        boolean steep = absY > absX;
+        double z = steep ? absX / absY : absY / absX;
+        double z2 = z * z;
+        double angle = z * (0.9998660 + z2 * (-0.3302995 + z2 * (0.1801410
+                + z2 * (-0.0851330 + z2 * 0.0208351))));
+
+        if (steep) {
+            angle = Math.PI / 2 - angle;
+        }
+        if (x < 0) {
+            angle = Math.PI - angle;
+        }
+        return (y < 0) ? -angle : angle;
+    }
+
+    /**
+     * Calculates the difference between two angles the short way around the circle, so that
+     * angles on either side of 0 are close (for example, the difference between 350 and 10
+     * degrees is 20 degrees, not 340).
+     *
+     * @param angleA the first angle, in degrees
+     * @param angleB the second angle, in degrees
+     * @return the difference, in degrees between 0 and 180
+     */
     public static double getAngleDifference(double angleA, double angleB) {
-        return Math.abs(angleA - angleB) % 360;
+        double difference = Math.abs(angleA - angleB) % 360;
+        return (difference > 180) ? 360 - difference : difference;
     }
 }
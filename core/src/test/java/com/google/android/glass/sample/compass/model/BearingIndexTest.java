@@ -0,0 +1,123 @@
+package com.google.android.glass.sample.compass.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.glass.sample.compass.util.LocalFrame;
+import com.google.android.glass.sample.compass.util.MathUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares {@link BearingIndex#findClosest} against a linear search, including headings on
+ * either side of north and outside of [0, 360).
+ */
+public class BearingIndexTest {
+
+    @Test
+    public void findClosestMatchesBruteForce() {
+        Random random = new Random(6);
+        for (int round = 0; round < 20; round++) {
+            int count = 1 + random.nextInt(50);
+            List<Place> places = TestPlaces.scatter(random, 45.0, 5.0, count, 0.05);
+            BearingIndex index = new BearingIndex(45.0, 5.0, places);
+            assertEquals(count, index.size());
+
+            LocalFrame frame = new LocalFrame(45.0, 5.0);
+            float previous = 0;
+            for (int i = 0; i < count; i++) {
+                Place place = index.getPlace(i);
+                assertEquals(frame.getBearing(place.getLatitude(), place.getLongitude()),
+                        index.getBearing(i), 0.0f);
+                assertTrue("not sorted", index.getBearing(i) >= previous);
+                previous = index.getBearing(i);
+            }
+
+            for (int query = 0; query < 200; query++) {
+                float heading;
+                switch (query % 4) {
+                    case 0:
+                        heading = random.nextFloat() * 360.0f;
+                        break;
+                    case 1:
+                        // Just either side of north.
+                        heading = random.nextFloat() * 2.0f - 1.0f;
+                        break;
+                    case 2:
+                        heading = -720.0f + random.nextFloat() * 720.0f;
+                        break;
+                    default:
+                        heading = 360.0f + random.nextFloat() * 720.0f;
+                        break;
+                }
+                assertClosest(index, heading);
+            }
+        }
+    }
+
+    @Test
+    public void findClosestWrapsAroundNorth() {
+        List<Place> places = new ArrayList<Place>();
+        places.add(placeAt(5.0f, "East of north"));
+        places.add(placeAt(180.0f, "South"));
+        places.add(placeAt(350.0f, "West of north"));
+        BearingIndex index = new BearingIndex(0.0, 0.0, places);
+
+        assertEquals("West of north", index.getPlace(index.findClosest(355.0f)).getName());
+        assertEquals("West of north", index.getPlace(index.findClosest(-5.0f)).getName());
+        assertEquals("East of north", index.getPlace(index.findClosest(359.0f)).getName());
+        assertEquals("East of north", index.getPlace(index.findClosest(0.0f)).getName());
+        assertEquals("East of north", index.getPlace(index.findClosest(720.0f)).getName());
+        assertEquals("South", index.getPlace(index.findClosest(-180.0f)).getName());
+    }
+
+    @Test
+    public void findClosestWithOnePlace() {
+        BearingIndex index = new BearingIndex(0.0, 0.0,
+                Collections.singletonList(placeAt(90.0f, "East")));
+        assertEquals(0, index.findClosest(270.0f));
+        assertEquals(0, index.findClosest(0.0f));
+    }
+
+    @Test
+    public void emptyIndexFindsNothing() {
+        BearingIndex index = new BearingIndex(45.0, 5.0, Collections.<Place>emptyList());
+        assertEquals(0, index.size());
+        assertEquals(-1, index.findClosest(0.0f));
+        assertTrue(Float.isNaN(index.findBearing(new Place(45.0, 5.0, "Place", ""))));
+    }
+
+    @Test
+    public void findBearingOfAbsentPlaceIsNaN() {
+        Place place = placeAt(90.0f, "East");
+        BearingIndex index = new BearingIndex(0.0, 0.0, Collections.singletonList(place));
+        assertEquals(90.0f, index.findBearing(place), 0.01f);
+        assertTrue(Float.isNaN(index.findBearing(placeAt(90.0f, "Another east"))));
+    }
+
+    private static void assertClosest(BearingIndex index, float heading) {
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < index.size(); i++) {
+            best = Math.min(best, MathUtils.getAngleDifference(index.getBearing(i), heading));
+        }
+        int closest = index.findClosest(heading);
+        // Ties and rounding on either side of a wrapped heading may pick either place.
+        assertEquals("heading " + heading, best,
+                MathUtils.getAngleDifference(index.getBearing(closest), heading), 1e-3);
+    }
+
+    /**
+     * Returns a place a kilometer away from the origin in the specified direction.
+     */
+    private static Place placeAt(float bearing, String name) {
+        double kmPerDegree = Math.toRadians(MathUtils.EARTH_RADIUS_KM);
+        double radians = Math.toRadians(bearing);
+        return new Place(Math.cos(radians) / kmPerDegree, Math.sin(radians) / kmPerDegree, name,
+                "");
+    }
+}
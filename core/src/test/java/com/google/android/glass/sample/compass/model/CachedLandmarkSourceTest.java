@@ -0,0 +1,107 @@
+package com.google.android.glass.sample.compass.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks when {@link CachedLandmarkSource} converts the original data and when it maps the
+ * converted file, and that a failed conversion leaves nothing behind.
+ */
+public class CachedLandmarkSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final List<Place> PLACES = Arrays.asList(
+            new Place(45.0, 5.0, "First", "The first place"),
+            new Place(-33.9, 151.2, "Second", "The second place"));
+
+    /** Returns the test places and counts how many times it was asked to. */
+    private static class CountingReader implements CachedLandmarkSource.PlaceReader {
+        int reads;
+
+        @Override
+        public List<Place> readPlaces() {
+            reads++;
+            return PLACES;
+        }
+    }
+
+    @Test
+    public void convertsOnceAndThenMaps() throws IOException {
+        File file = new File(folder.getRoot(), "landmarks.bin");
+        CountingReader reader = new CountingReader();
+
+        assertPlaces(new CachedLandmarkSource(file, 1, reader).open());
+        assertEquals(1, reader.reads);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        assertPlaces(new CachedLandmarkSource(file, 1, reader).open());
+        assertEquals(1, reader.reads);
+    }
+
+    @Test
+    public void convertsAgainWhenTheSourceChanges() throws IOException {
+        File file = new File(folder.getRoot(), "landmarks.bin");
+        CountingReader reader = new CountingReader();
+
+        new CachedLandmarkSource(file, 1, reader).open();
+        LandmarkFile landmarkFile = new CachedLandmarkSource(file, 2, reader).open();
+        assertEquals(2, reader.reads);
+        assertEquals(2, landmarkFile.getSourceStamp());
+        assertPlaces(landmarkFile);
+
+        new CachedLandmarkSource(file, 2, reader).open();
+        assertEquals(2, reader.reads);
+    }
+
+    @Test
+    public void failedReadWritesNothing() throws IOException {
+        File file = new File(folder.getRoot(), "landmarks.bin");
+        CachedLandmarkSource.PlaceReader failingReader = new CachedLandmarkSource.PlaceReader() {
+            @Override
+            public List<Place> readPlaces() throws IOException {
+                throw new IOException("Truncated");
+            }
+        };
+
+        try {
+            new CachedLandmarkSource(file, 1, failingReader).open();
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            assertEquals("Truncated", expected.getMessage());
+        }
+        assertFalse(file.exists());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        // The next open tries the conversion again.
+        CountingReader reader = new CountingReader();
+        assertPlaces(new CachedLandmarkSource(file, 1, reader).open());
+        assertEquals(1, reader.reads);
+    }
+
+    /**
+     * Checks that the file holds the test places, which it stores in its own order.
+     */
+    private static void assertPlaces(LandmarkFile landmarkFile) {
+        assertEquals(PLACES.size(), landmarkFile.size());
+        assertFalse(landmarkFile.getName(0).equals(landmarkFile.getName(1)));
+        for (int i = 0; i < landmarkFile.size(); i++) {
+            Place place = PLACES.get(landmarkFile.getName(i).equals("First") ? 0 : 1);
+            assertEquals(place.getName(), landmarkFile.getName(i));
+            assertEquals(place.getDescription(), landmarkFile.getDescription(i));
+            assertEquals(place.getLatitude(), landmarkFile.getLatitude(i), 1e-6);
+            assertEquals(place.getLongitude(), landmarkFile.getLongitude(i), 1e-6);
+        }
+    }
+}
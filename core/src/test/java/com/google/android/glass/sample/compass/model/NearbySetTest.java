@@ -0,0 +1,175 @@
+package com.google.android.glass.sample.compass.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.glass.sample.compass.util.MathUtils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Walks a {@link NearbySet} around synthetic catalogues and compares its members with a brute
+ * force model of the hysteresis: a place enters within 10 km and leaves beyond 10.25 km.
+ */
+public class NearbySetTest {
+
+    private static final double ENTER_RADIUS_KM = 10.0;
+    private static final double EXIT_RADIUS_KM = 10.25;
+
+    /** The length of one degree of latitude, or of longitude on the equator, in kilometers. */
+    private static final double KM_PER_DEGREE = Math.toRadians(MathUtils.EARTH_RADIUS_KM);
+
+    /**
+     * How close to a radius a place may be for either answer to be accepted. The set measures
+     * distances in a {@link com.google.android.glass.sample.compass.util.LocalFrame}, which is
+     * within a few decimeters of the exact distance at 10 km.
+     */
+    private static final double TOLERANCE_KM = 1e-3;
+
+    @Test
+    public void randomWalkMatchesBruteForce() throws IOException {
+        Random random = new Random(5);
+        double[][] centers = {{45.0, 5.0}, {0.0, 179.98}, {-70.0, -60.0}};
+        for (double[] center : centers) {
+            List<Place> places = TestPlaces.scatter(random, center[0], center[1], 3000, 0.2);
+            NearbySet nearbySet = new NearbySet(TestPlaces.load(places));
+
+            Set<String> expected = new HashSet<String>();
+            double latitude = center[0];
+            double longitude = center[1];
+            for (int step = 0; step < 300; step++) {
+                if (step % 50 == 49) {
+                    // Now and then, jump far enough that the set has to query the landmarks again.
+                    double[] point = TestPlaces.randomPoint(random, center[0], center[1], 0.1);
+                    latitude = point[0];
+                    longitude = point[1];
+                } else {
+                    double stepKm = 0.3 * random.nextDouble();
+                    double direction = 2 * Math.PI * random.nextDouble();
+                    latitude += stepKm * Math.cos(direction) / KM_PER_DEGREE;
+                    longitude += stepKm * Math.sin(direction)
+                            / (KM_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+                }
+
+                Set<String> before = names(nearbySet.getPlaces());
+                NearbySet.Delta delta = nearbySet.update(latitude, longitude);
+                Set<String> actual = names(nearbySet.getPlaces());
+
+                for (Place place : places) {
+                    String name = place.getName();
+                    double distance = TestPlaces.distanceKm(latitude, longitude, place);
+                    boolean member = expected.contains(name)
+                            ? distance <= EXIT_RADIUS_KM : distance <= ENTER_RADIUS_KM;
+                    if (Math.abs(distance - ENTER_RADIUS_KM) < TOLERANCE_KM
+                            || Math.abs(distance - EXIT_RADIUS_KM) < TOLERANCE_KM) {
+                        // Too close to call; follow the set from here on.
+                        member = actual.contains(name);
+                    }
+                    if (member) {
+                        expected.add(name);
+                    } else {
+                        expected.remove(name);
+                    }
+                }
+                assertEquals("step " + step, expected, actual);
+
+                // The delta accounts for exactly the difference between the two states.
+                Set<String> entered = new HashSet<String>(actual);
+                entered.removeAll(before);
+                Set<String> exited = new HashSet<String>(before);
+                exited.removeAll(actual);
+                assertEquals(entered, names(delta.getEntered()));
+                assertEquals(exited, names(delta.getExited()));
+                assertEquals(delta.getEntered().size(), entered.size());
+                assertEquals(delta.getExited().size(), exited.size());
+            }
+        }
+    }
+
+    @Test
+    public void placeBetweenTheRadiiKeepsItsState() throws IOException {
+        NearbySet nearbySet = new NearbySet(TestPlaces.load(Collections.singletonList(
+                new Place(0.0, 0.0, "Place", ""))));
+
+        // The user walks north towards the place, which is on the equator.
+        assertEquals(Collections.<String>emptySet(), names(update(nearbySet, -10.1).getEntered()));
+        assertEquals(setOf("Place"), names(update(nearbySet, -9.9).getEntered()));
+        assertTrue(update(nearbySet, -10.1).isEmpty());
+        assertEquals(setOf("Place"), names(nearbySet.getPlaces()));
+        assertEquals(setOf("Place"), names(update(nearbySet, -10.3).getExited()));
+        assertTrue(update(nearbySet, -10.1).isEmpty());
+        assertTrue(nearbySet.getPlaces().isEmpty());
+    }
+
+    @Test
+    public void placeBetweenTheRadiiKeepsItsStateAcrossRequeries() throws IOException {
+        NearbySet nearbySet = new NearbySet(TestPlaces.load(Collections.singletonList(
+                new Place(0.0, 0.0, "Place", ""))));
+
+        // The user circles the place at the same distance, far enough around to requery.
+        assertEquals(setOf("Place"), names(update(nearbySet, -9.9).getEntered()));
+        assertTrue(nearbySet.update(0.0, 10.1 / KM_PER_DEGREE).isEmpty());
+        assertTrue(nearbySet.update(10.1 / KM_PER_DEGREE, 0.0).isEmpty());
+        assertEquals(setOf("Place"), names(nearbySet.getPlaces()));
+
+        // And beyond the horizon, from where it leaves.
+        assertEquals(setOf("Place"), names(nearbySet.update(0.0, -0.2).getExited()));
+        assertTrue(nearbySet.update(-10.1 / KM_PER_DEGREE, 0.0).isEmpty());
+        assertTrue(nearbySet.getPlaces().isEmpty());
+    }
+
+    @Test
+    public void invalidateQueriesTheLandmarksAgain() throws IOException {
+        Landmarks landmarks = TestPlaces.load(Collections.<Place>emptyList());
+        NearbySet nearbySet = new NearbySet(landmarks);
+        assertTrue(update(nearbySet, -9.9).isEmpty());
+
+        landmarks.load(TestPlaces.toLandmarkFile(Collections.singletonList(
+                new Place(0.0, 0.0, "Place", ""))));
+        assertTrue(update(nearbySet, -9.8).isEmpty());
+        nearbySet.invalidate();
+        assertEquals(setOf("Place"), names(update(nearbySet, -9.8).getEntered()));
+    }
+
+    @Test
+    public void emptyLandmarksGiveAnEmptySet() throws IOException {
+        NearbySet nearbySet = new NearbySet(TestPlaces.load(Collections.<Place>emptyList()));
+        assertTrue(nearbySet.update(45.0, 5.0).isEmpty());
+        assertTrue(nearbySet.update(45.001, 5.0).isEmpty());
+        assertTrue(nearbySet.getPlaces().isEmpty());
+
+        // Landmarks that are not loaded yet behave the same way.
+        nearbySet = new NearbySet(new Landmarks());
+        assertTrue(nearbySet.update(45.0, 5.0).isEmpty());
+        assertTrue(nearbySet.getPlaces().isEmpty());
+    }
+
+    /**
+     * Moves the user to the specified distance due south of the equator and the prime meridian.
+     */
+    private static NearbySet.Delta update(NearbySet nearbySet, double distanceKm) {
+        return nearbySet.update(distanceKm / KM_PER_DEGREE, 0.0);
+    }
+
+    private static Set<String> names(Iterable<Place> places) {
+        Set<String> names = new HashSet<String>();
+        for (Place place : places) {
+            names.add(place.getName());
+        }
+        return names;
+    }
+
+    private static Set<String> setOf(String... names) {
+        Set<String> set = new HashSet<String>();
+        Collections.addAll(set, names);
+        return set;
+    }
+}
@@ -0,0 +1,96 @@
+package com.google.android.glass.sample.compass.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the radius query of {@link PlaceIndex} against a brute force search over the same
+ * places, in ordinary places and around the antimeridian and the poles.
+ */
+public class PlaceIndexTest {
+
+    /**
+     * How far a place may be from a radius, in kilometers, for either answer to be accepted. The
+     * file stores coordinates to about a centimeter.
+     */
+    private static final double TOLERANCE_KM = 1e-4;
+
+    private static final double RADIUS_KM = 10.0;
+
+    /** Centers of the test catalogues: ordinary, antimeridian, near each pole, and both. */
+    private static final double[][] CENTERS = {
+        {45.0, 5.0}, {-33.9, 151.2}, {0.0, 179.98}, {0.0, -179.98}, {89.95, 10.0},
+        {-89.9, -120.0}, {89.99, 179.99},
+    };
+
+    @Test
+    public void findWithinMatchesBruteForce() throws IOException {
+        Random random = new Random(1);
+        for (double[] center : CENTERS) {
+            List<Place> places = TestPlaces.scatter(random, center[0], center[1], 2000, 0.15);
+            PlaceIndex index = TestPlaces.index(places);
+
+            for (int query = 0; query < 50; query++) {
+                double[] point = TestPlaces.randomPoint(random, center[0], center[1], 0.1);
+                List<Place> result = new ArrayList<Place>();
+                index.findWithin(point[0], point[1], RADIUS_KM, result);
+
+                Set<String> found = names(result);
+                assertEquals("duplicates", result.size(), found.size());
+                for (Place place : places) {
+                    double distance = TestPlaces.distanceKm(point[0], point[1], place);
+                    if (distance < RADIUS_KM - TOLERANCE_KM) {
+                        assertTrue(place.getName() + " missing at " + distance + " km",
+                                found.contains(place.getName()));
+                    } else if (distance > RADIUS_KM + TOLERANCE_KM) {
+                        assertTrue(place.getName() + " found at " + distance + " km",
+                                !found.contains(place.getName()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void findWithinAcrossTheAntimeridian() throws IOException {
+        List<Place> places = new ArrayList<Place>();
+        places.add(new Place(0.0, 179.99, "West of the line", ""));
+        places.add(new Place(0.0, -179.99, "East of the line", ""));
+        places.add(new Place(0.0, 179.0, "Far west", ""));
+        PlaceIndex index = TestPlaces.index(places);
+
+        List<Place> result = new ArrayList<Place>();
+        index.findWithin(0.0, 180.0, RADIUS_KM, result);
+        assertEquals(new HashSet<String>(Arrays.asList("West of the line", "East of the line")),
+                names(result));
+    }
+
+    @Test
+    public void queriesOnAnEmptyIndexFindNothing() throws IOException {
+        PlaceIndex index = TestPlaces.index(Collections.<Place>emptyList());
+        List<Place> result = new ArrayList<Place>();
+
+        index.findWithin(45.0, 5.0, RADIUS_KM, result);
+        assertTrue(result.isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    private static Set<String> names(List<Place> places) {
+        Set<String> names = new HashSet<String>();
+        for (Place place : places) {
+            names.add(place.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,156 @@
+package com.google.android.glass.sample.compass.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.glass.sample.compass.util.LocalFrame;
+import com.google.android.glass.sample.compass.util.MathUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares a fresh {@link SectorSelection} with a brute force pick of the nearest places in each
+ * sector, and checks that places already selected hold on to their slots.
+ */
+public class SectorSelectionTest {
+
+    private static final int SECTOR_COUNT = 4;
+    private static final int PLACES_PER_SECTOR = 8;
+
+    @Test
+    public void freshSelectionMatchesBruteForce() {
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            int count = random.nextInt(100);
+            List<Place> places = TestPlaces.scatter(random, 45.0, 5.0, count, 0.05);
+            double[] point = TestPlaces.randomPoint(random, 45.0, 5.0, 0.02);
+
+            SectorSelection selection = new SectorSelection(SECTOR_COUNT, PLACES_PER_SECTOR);
+            assertEquals(count > 0, selection.update(point[0], point[1], places));
+            assertEquals(nearestInEachSector(point, places), selection.getSelection());
+        }
+    }
+
+    @Test
+    public void sparseDirectionsAreKept() {
+        List<Place> places = new ArrayList<Place>();
+        for (int i = 0; i < 50; i++) {
+            places.add(placeAt(0.0f, 1.0 + i * 0.1, "North " + i));
+        }
+        places.add(placeAt(180.0f, 9.0, "Far south"));
+
+        SectorSelection selection = new SectorSelection(SECTOR_COUNT, PLACES_PER_SECTOR);
+        selection.update(0.0, 0.0, places);
+        List<Place> selected = selection.getSelection();
+        assertEquals(PLACES_PER_SECTOR + 1, selected.size());
+        assertEquals(places.subList(0, PLACES_PER_SECTOR), selected.subList(0, PLACES_PER_SECTOR));
+        assertEquals("Far south", selected.get(PLACES_PER_SECTOR).getName());
+    }
+
+    @Test
+    public void selectedPlacesAreSticky() {
+        SectorSelection selection = new SectorSelection(SECTOR_COUNT, 1);
+        Place selected = placeAt(10.0f, 1.0, "Selected");
+        Place slightlyNearer = placeAt(20.0f, 0.95, "Slightly nearer");
+        Place muchNearer = placeAt(30.0f, 0.85, "Much nearer");
+
+        assertTrue(selection.update(0.0, 0.0, Collections.singletonList(selected)));
+        assertFalse(selection.update(0.0, 0.0, Arrays.asList(selected, slightlyNearer)));
+        assertEquals(Collections.singletonList(selected), selection.getSelection());
+
+        assertTrue(selection.update(0.0, 0.0,
+                Arrays.asList(selected, slightlyNearer, muchNearer)));
+        assertEquals(Collections.singletonList(muchNearer), selection.getSelection());
+    }
+
+    @Test
+    public void unchangedInputKeepsTheSameList() {
+        List<Place> places = TestPlaces.scatter(new Random(8), 45.0, 5.0, 100, 0.05);
+        SectorSelection selection = new SectorSelection(SECTOR_COUNT, PLACES_PER_SECTOR);
+        assertTrue(selection.update(45.0, 5.0, places));
+        List<Place> selected = selection.getSelection();
+
+        assertFalse(selection.update(45.0, 5.0, places));
+        assertSame(selected, selection.getSelection());
+
+        // Small movements do not reshuffle the selection either.
+        assertFalse(selection.update(45.00001, 5.00001, places));
+        assertSame(selected, selection.getSelection());
+    }
+
+    @Test
+    public void emptyInputEmptiesTheSelection() {
+        List<Place> places = TestPlaces.scatter(new Random(9), 45.0, 5.0, 10, 0.05);
+        SectorSelection selection = new SectorSelection(SECTOR_COUNT, PLACES_PER_SECTOR);
+        assertFalse(selection.update(45.0, 5.0, Collections.<Place>emptyList()));
+        assertTrue(selection.getSelection().isEmpty());
+
+        assertTrue(selection.update(45.0, 5.0, places));
+        assertEquals(places.size(), selection.getSelection().size());
+        assertTrue(selection.update(45.0, 5.0, Collections.<Place>emptyList()));
+        assertTrue(selection.getSelection().isEmpty());
+    }
+
+    @Test
+    public void clearStartsOver() {
+        SectorSelection selection = new SectorSelection(SECTOR_COUNT, 1);
+        Place selected = placeAt(10.0f, 1.0, "Selected");
+        Place slightlyNearer = placeAt(20.0f, 0.95, "Slightly nearer");
+        selection.update(0.0, 0.0, Collections.singletonList(selected));
+
+        selection.clear();
+        assertTrue(selection.getSelection().isEmpty());
+        assertTrue(selection.update(0.0, 0.0, Arrays.asList(selected, slightlyNearer)));
+        assertEquals(Collections.singletonList(slightlyNearer), selection.getSelection());
+        assertEquals(SECTOR_COUNT, selection.getCapacity());
+    }
+
+    /**
+     * Returns the nearest places in each sector, sorted by sector and then by distance.
+     */
+    private static List<Place> nearestInEachSector(double[] point, List<Place> places) {
+        final LocalFrame frame = new LocalFrame(point[0], point[1]);
+        List<Place> sorted = new ArrayList<Place>(places);
+        Collections.sort(sorted, new Comparator<Place>() {
+            @Override
+            public int compare(Place lhs, Place rhs) {
+                return Float.compare(frame.getDistance(lhs.getLatitude(), lhs.getLongitude()),
+                        frame.getDistance(rhs.getLatitude(), rhs.getLongitude()));
+            }
+        });
+
+        List<Place> result = new ArrayList<Place>();
+        for (int sector = 0; sector < SECTOR_COUNT; sector++) {
+            int count = 0;
+            for (Place place : sorted) {
+                float bearing = frame.getBearing(place.getLatitude(), place.getLongitude());
+                int placeSector = Math.min((int) (bearing / (360.0f / SECTOR_COUNT)),
+                        SECTOR_COUNT - 1);
+                if (placeSector == sector && count < PLACES_PER_SECTOR) {
+                    result.add(place);
+                    count++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a place at the specified distance from the origin, in the specified direction.
+     */
+    private static Place placeAt(float bearing, double distanceKm, String name) {
+        double kmPerDegree = Math.toRadians(MathUtils.EARTH_RADIUS_KM);
+        double radians = Math.toRadians(bearing);
+        return new Place(distanceKm * Math.cos(radians) / kmPerDegree,
+                distanceKm * Math.sin(radians) / kmPerDegree, name, "");
+    }
+}
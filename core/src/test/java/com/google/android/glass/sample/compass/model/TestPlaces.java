@@ -0,0 +1,88 @@
+package com.google.android.glass.sample.compass.model;
+
+import com.google.android.glass.sample.compass.util.MathUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds synthetic catalogues for the model tests, and computes the exact distances that the
+ * index and set classes are compared against.
+ */
+final class TestPlaces {
+
+    private TestPlaces() {
+    }
+
+    /**
+     * Returns places scattered uniformly in a box around the specified coordinates, wrapping
+     * across the antimeridian and clamped at the poles.
+     *
+     * @param spreadDegrees the half-height of the box; its half-width is three times as much
+     */
+    static List<Place> scatter(Random random, double latitude, double longitude, int count,
+            double spreadDegrees) {
+        List<Place> places = new ArrayList<Place>(count);
+        for (int i = 0; i < count; i++) {
+            double[] point = randomPoint(random, latitude, longitude, spreadDegrees);
+            places.add(new Place(point[0], point[1], "Place " + i, "Description " + i));
+        }
+        return places;
+    }
+
+    /**
+     * Returns a random point in the same kind of box as {@link #scatter}, as a latitude and a
+     * longitude.
+     */
+    static double[] randomPoint(Random random, double latitude, double longitude,
+            double spreadDegrees) {
+        double pointLatitude = latitude + (2 * random.nextDouble() - 1) * spreadDegrees;
+        double pointLongitude = longitude + (2 * random.nextDouble() - 1) * 3 * spreadDegrees;
+        pointLatitude = Math.max(-90.0, Math.min(90.0, pointLatitude));
+        pointLongitude = MathUtils.mod((float) (pointLongitude + 180.0), 360.0f) - 180.0;
+        return new double[] {pointLatitude, pointLongitude};
+    }
+
+    /**
+     * Converts the places to a landmark file and loads it, the way the application does.
+     */
+    static Landmarks load(List<Place> places) throws IOException {
+        Landmarks landmarks = new Landmarks();
+        landmarks.load(toLandmarkFile(places));
+        return landmarks;
+    }
+
+    /**
+     * Converts the places to a landmark file and indexes it.
+     */
+    static PlaceIndex index(List<Place> places) throws IOException {
+        return new PlaceIndex(new PlaceStore(toLandmarkFile(places)));
+    }
+
+    static LandmarkFile toLandmarkFile(List<Place> places) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LandmarkFile.write(places, 0, out);
+        return new LandmarkFile(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /**
+     * Returns the great circle distance between two points in kilometers, in double precision.
+     */
+    static double distanceKm(double latitude1, double longitude1, double latitude2,
+            double longitude2) {
+        double sinHalfDeltaLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinHalfDeltaLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double haversine = sinHalfDeltaLatitude * sinHalfDeltaLatitude
+                + sinHalfDeltaLongitude * sinHalfDeltaLongitude
+                * Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2));
+        return 2 * MathUtils.EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(1.0, haversine)));
+    }
+
+    static double distanceKm(double latitude, double longitude, Place place) {
+        return distanceKm(latitude, longitude, place.getLatitude(), place.getLongitude());
+    }
+}
@@ -0,0 +1,116 @@
+package com.google.android.glass.sample.compass.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks how {@link HeadingFilter} follows headings across north, and when it starts over.
+ */
+public class HeadingFilterTest {
+
+    private static final long SAMPLE_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    @Test
+    public void firstMeasurementIsTakenAsIs() {
+        HeadingFilter filter = new HeadingFilter();
+        filter.update(-30.0f, 1000);
+        assertEquals(330.0f, filter.getHeading(), 1e-4f);
+        assertEquals(0.0f, filter.getVelocity(), 0.0f);
+    }
+
+    @Test
+    public void constantRotationAcrossNorthConverges() {
+        HeadingFilter filter = new HeadingFilter();
+        float velocity = -30.0f;
+        long timestamp = 0;
+        float measured = 20.0f;
+        for (int i = 0; i < 200; i++) {
+            filter.update(measured, timestamp);
+            timestamp += SAMPLE_NANOS;
+            measured += velocity * SAMPLE_NANOS / 1e9f;
+        }
+
+        // The measurements went from 20 degrees down past north to 260 degrees.
+        assertEquals(velocity, filter.getVelocity(), 0.1f);
+        assertEquals(0.0, MathUtils.getAngleDifference(filter.getHeading(),
+                measured - velocity * SAMPLE_NANOS / 1e9f), 0.01);
+        assertTrue(filter.getHeading() >= 0.0f && filter.getHeading() < 360.0f);
+    }
+
+    @Test
+    public void longGapStartsOver() {
+        HeadingFilter filter = rotating();
+        long timestamp = 9 * SAMPLE_NANOS + TimeUnit.MILLISECONDS.toNanos(501);
+        filter.update(123.0f, timestamp);
+        assertEquals(123.0f, filter.getHeading(), 0.0f);
+        assertEquals(0.0f, filter.getVelocity(), 0.0f);
+
+        // A gap of exactly the limit does not.
+        filter = rotating();
+        filter.update(filter.getHeading() + 5.0f,
+                9 * SAMPLE_NANOS + TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(filter.getVelocity() != 0.0f);
+    }
+
+    @Test
+    public void timestampGoingBackStartsOver() {
+        HeadingFilter filter = rotating();
+        filter.update(200.0f, 9 * SAMPLE_NANOS);
+        assertEquals(200.0f, filter.getHeading(), 0.0f);
+        assertEquals(0.0f, filter.getVelocity(), 0.0f);
+
+        filter = rotating();
+        filter.update(200.0f, 0);
+        assertEquals(200.0f, filter.getHeading(), 0.0f);
+        assertEquals(0.0f, filter.getVelocity(), 0.0f);
+    }
+
+    @Test
+    public void resetStartsOver() {
+        HeadingFilter filter = rotating();
+        filter.reset();
+        filter.update(200.0f, 10 * SAMPLE_NANOS);
+        assertEquals(200.0f, filter.getHeading(), 0.0f);
+        assertEquals(0.0f, filter.getVelocity(), 0.0f);
+    }
+
+    @Test
+    public void jumpResetsTheVelocity() {
+        HeadingFilter filter = rotating();
+        filter.update(filter.getHeading() + 90.0f, 10 * SAMPLE_NANOS);
+        assertEquals(0.0f, filter.getVelocity(), 0.0f);
+
+        // A jump across north is measured the short way around, so it is not a jump.
+        filter = new HeadingFilter();
+        filter.update(355.0f, 0);
+        filter.update(5.0f, SAMPLE_NANOS);
+        assertTrue(filter.getVelocity() > 0.0f);
+        assertEquals(0.0, MathUtils.getAngleDifference(filter.getHeading(), 0.0f), 1e-3);
+    }
+
+    @Test
+    public void predictionIsLimitedAndWraps() {
+        long limit = HeadingFilter.MAX_PREDICTION_NANOS;
+        assertEquals(355.0f, HeadingFilter.predict(5.0f, -100.0f, limit), 1e-3f);
+        assertEquals(355.0f, HeadingFilter.predict(5.0f, -100.0f, 10 * limit), 1e-3f);
+        assertEquals(5.0f, HeadingFilter.predict(5.0f, -100.0f, -limit), 0.0f);
+        assertEquals(5.0f, HeadingFilter.predict(355.0f, 100.0f, limit), 1e-3f);
+    }
+
+    /**
+     * Returns a filter that has followed a heading turning at 10 degrees per second for ten
+     * samples, the last one at {@code 9 * SAMPLE_NANOS}.
+     */
+    private static HeadingFilter rotating() {
+        HeadingFilter filter = new HeadingFilter();
+        for (int i = 0; i < 10; i++) {
+            filter.update(100.0f + i * 10.0f * SAMPLE_NANOS / 1e9f, i * SAMPLE_NANOS);
+        }
+        assertTrue(filter.getVelocity() > 0.0f);
+        return filter;
+    }
+}
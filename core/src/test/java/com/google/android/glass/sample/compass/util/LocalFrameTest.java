@@ -0,0 +1,117 @@
+package com.google.android.glass.sample.compass.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Checks the distances and bearings of {@link LocalFrame} against the exact great circle
+ * formulas, within the error bounds that it documents.
+ */
+public class LocalFrameTest {
+
+    /** The length of one degree of latitude, in kilometers. */
+    private static final double KM_PER_DEGREE = Math.toRadians(MathUtils.EARTH_RADIUS_KM);
+
+    /** The documented bounds, for places up to 20 km away and latitudes up to 80 degrees. */
+    private static final double MAX_RELATIVE_DISTANCE_ERROR = 2e-5;
+    private static final double MAX_BEARING_ERROR_DEGREES = 0.003;
+
+    @Test
+    public void errorsAreWithinTheDocumentedBounds() {
+        Random random = new Random(10);
+        for (int i = 0; i < 100000; i++) {
+            double originLatitude = -80.0 + 160.0 * random.nextDouble();
+            double originLongitude = -180.0 + 360.0 * random.nextDouble();
+            double[] point = randomNearbyPoint(random, originLatitude, originLongitude);
+            assertWithinBounds(originLatitude, originLongitude, point[0], point[1]);
+        }
+    }
+
+    @Test
+    public void errorsAreWithinTheDocumentedBoundsAcrossTheAntimeridian() {
+        Random random = new Random(11);
+        for (int i = 0; i < 10000; i++) {
+            double originLatitude = -80.0 + 160.0 * random.nextDouble();
+            double originLongitude = (i % 2 == 0) ? 179.99 : -179.99;
+            double[] point = randomNearbyPoint(random, originLatitude, originLongitude);
+            assertWithinBounds(originLatitude, originLongitude, point[0], point[1]);
+        }
+    }
+
+    @Test
+    public void cardinalDirections() {
+        LocalFrame frame = new LocalFrame(45.0, 5.0);
+        assertEquals(0.0f, frame.getBearing(45.01, 5.0), 1e-3f);
+        assertEquals(90.0f, frame.getBearing(45.0, 5.01), 0.01f);
+        assertEquals(180.0f, frame.getBearing(44.99, 5.0), 1e-3f);
+        assertEquals(270.0f, frame.getBearing(45.0, 4.99), 0.01f);
+        assertEquals(0.0f, frame.getDistance(45.0, 5.0), 0.0f);
+    }
+
+    /**
+     * Returns a point up to 20 km from the origin, wrapping the longitude into [-180, 180).
+     */
+    private static double[] randomNearbyPoint(Random random, double latitude, double longitude) {
+        double distanceKm = 0.01 + 19.99 * random.nextDouble();
+        double direction = 2 * Math.PI * random.nextDouble();
+        double pointLatitude = latitude + distanceKm * Math.cos(direction) / KM_PER_DEGREE;
+        double pointLongitude = longitude + distanceKm * Math.sin(direction)
+                / (KM_PER_DEGREE * Math.cos(Math.toRadians(pointLatitude)));
+        if (pointLongitude >= 180.0) {
+            pointLongitude -= 360.0;
+        } else if (pointLongitude < -180.0) {
+            pointLongitude += 360.0;
+        }
+        return new double[] {pointLatitude, pointLongitude};
+    }
+
+    private static void assertWithinBounds(double originLatitude, double originLongitude,
+            double latitude, double longitude) {
+        LocalFrame frame = new LocalFrame(originLatitude, originLongitude);
+        String where = "from " + originLatitude + ", " + originLongitude + " to " + latitude
+                + ", " + longitude;
+
+        double distance = exactDistance(originLatitude, originLongitude, latitude, longitude);
+        double distanceError = Math.abs(frame.getDistance(latitude, longitude) - distance);
+        assertTrue(where + ": distance off by " + distanceError + " km",
+                distanceError <= MAX_RELATIVE_DISTANCE_ERROR * distance);
+
+        double bearing = exactBearing(originLatitude, originLongitude, latitude, longitude);
+        double bearingError = MathUtils.getAngleDifference(frame.getBearing(latitude, longitude),
+                bearing);
+        assertTrue(where + ": bearing off by " + bearingError + " degrees",
+                bearingError <= MAX_BEARING_ERROR_DEGREES);
+    }
+
+    /**
+     * Returns the great circle distance between two points, in kilometers, in double precision.
+     */
+    private static double exactDistance(double latitude1, double longitude1, double latitude2,
+            double longitude2) {
+        double sinHalfDeltaLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinHalfDeltaLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double haversine = sinHalfDeltaLatitude * sinHalfDeltaLatitude
+                + sinHalfDeltaLongitude * sinHalfDeltaLongitude
+                * Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2));
+        return 2 * MathUtils.EARTH_RADIUS_KM * Math.asin(Math.sqrt(haversine));
+    }
+
+    /**
+     * Returns the initial bearing of the great circle between two points, in degrees, in double
+     * precision.
+     */
+    private static double exactBearing(double latitude1, double longitude1, double latitude2,
+            double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+        double y = Math.sin(deltaLongitude) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2)
+                - Math.sin(phi1) * Math.cos(phi2) * Math.cos(deltaLongitude);
+        return Math.toDegrees(Math.atan2(y, x));
+    }
+}